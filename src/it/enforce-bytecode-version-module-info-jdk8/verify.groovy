@@ -3,4 +3,4 @@ assert file.exists()
 
 String text = file.getText("utf-8")
 
-assert text.contains('[DEBUG] Ignore: module-info maps to regex ^module-info(\\.class)?$')
+assert text.contains('[DEBUG] Ignore: module-info in all dependencies')
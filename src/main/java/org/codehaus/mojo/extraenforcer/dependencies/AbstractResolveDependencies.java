@@ -1,27 +1,38 @@
 package org.codehaus.mojo.extraenforcer.dependencies;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.enforcer.rule.api.AbstractEnforcerRule;
 import org.apache.maven.enforcer.rule.api.EnforcerRuleError;
 import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryException;
 import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.ArtifactTypeRegistry;
 import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.collection.CollectResult;
 import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.collection.DependencySelector;
 import org.eclipse.aether.graph.DefaultDependencyNode;
 import org.eclipse.aether.graph.Dependency;
 import org.eclipse.aether.graph.DependencyFilter;
@@ -32,6 +43,7 @@ import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.util.filter.AndDependencyFilter;
 import org.eclipse.aether.util.filter.ScopeDependencyFilter;
+import org.eclipse.aether.util.graph.selector.AndDependencySelector;
 
 /**
  * Abstract rule for when the content of the artifacts matters.
@@ -62,83 +74,447 @@ abstract class AbstractResolveDependencies extends AbstractEnforcerRule {
      */
     private boolean searchTransitive = true;
 
+    /**
+     * Keep the class index of each inspected jar in a persistent cache, so unchanged jars don't have to be read
+     * again by later builds.
+     */
+    private boolean useClassIndexCache = false;
+
+    /**
+     * Directory of the persistent class index cache, defaults to {@code .cache/extra-enforcer-rules/class-index} in
+     * the local repository.
+     */
+    private File classIndexCacheDirectory;
+
+    /**
+     * Number of artifacts to inspect in parallel. {@code 1} (default) inspects them one after the other, values below
+     * {@code 1} use the number of available processors.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Use virtual threads to inspect artifacts in parallel when running on Java 21 or later, instead of a fixed thread
+     * pool.
+     */
+    private boolean useVirtualThreads = false;
+
+    /**
+     * Jars with at least this many class entries are split into ranges of entries which are inspected in parallel,
+     * so a single huge shaded jar doesn't keep one thread busy while the others are done. {@code 0} (default) never
+     * splits a jar.
+     */
+    private int parallelEntryThreshold = 0;
+
+    /**
+     * Use the artifacts Maven already resolved for the project, e.g. for a rule bound after {@code compile}, instead
+     * of collecting and resolving the dependency graph again. The graph is still collected if any of the required
+     * dependencies isn't resolved yet.
+     */
+    private boolean reuseProjectArtifacts = false;
+
+    /**
+     * Apply the scope and optional filters while collecting the dependency graph, so the subtrees of filtered
+     * dependencies are neither collected nor resolved. As the pruned dependencies don't take part in the conflict
+     * resolution, the version of a dependency may differ from the one selected for the complete graph.
+     */
+    private boolean pruneFilteredDependencies = false;
+
     private final MavenSession session;
 
     private final RepositorySystem repositorySystem;
 
-    protected AbstractResolveDependencies(MavenSession session, RepositorySystem repositorySystem) {
+    private final ArtifactScanIndex scanIndex;
+
+    private final Set<JarContents> usedJarContents = ConcurrentHashMap.newKeySet();
+
+    private JarContentsStore jarContentsStore;
+
+    protected AbstractResolveDependencies(
+            MavenSession session, RepositorySystem repositorySystem, ArtifactScanIndex scanIndex) {
         this.session = session;
         this.repositorySystem = repositorySystem;
+        this.scanIndex = scanIndex;
     }
 
     @Override
     public void execute() throws EnforcerRuleException {
-        handleArtifacts(getDependenciesToCheck());
+        try {
+            handleArtifacts(getDependenciesToCheck());
+        } finally {
+            releaseJarContents();
+        }
     }
 
-    protected abstract void handleArtifacts(Set<Artifact> artifacts) throws EnforcerRuleException;
+    /**
+     * Get the contents of a jar from the session-scoped index, backed by the persistent class index cache when
+     * enabled.
+     *
+     * @param file the jar file
+     * @return the contents of the jar file
+     */
+    protected JarContents getJarContents(File file) {
+        JarContents jarContents = scanIndex.getJarContents(file);
+        load(jarContents);
+        usedJarContents.add(jarContents);
+        return jarContents;
+    }
 
-    private Set<Artifact> getDependenciesToCheck() throws EnforcerRuleException {
-        Set<Artifact> artifacts = null;
-        try {
-            Collection<DependencyNode> dependencies = collectProjectDependencies();
-            artifacts = resolveArtifacts(dependencies);
-        } catch (DependencyCollectionException | ArtifactResolutionException e) {
-            throw new EnforcerRuleError(e.getMessage(), e);
+    /**
+     * Read the contents of a jar without keeping them in the session-scoped index, so they can be garbage collected
+     * once the caller is done with them. They are still backed by the persistent class index cache when enabled.
+     *
+     * @param file the jar file
+     * @return the contents of the jar file, to be passed to {@link #releaseJarContents(JarContents)} afterwards
+     */
+    protected JarContents readJarContents(File file) {
+        JarContents jarContents = new JarContents(file.getAbsoluteFile());
+        load(jarContents);
+        return jarContents;
+    }
+
+    private void load(JarContents jarContents) {
+        jarContents.setParallelThreshold(parallelEntryThreshold);
+        JarContentsStore store = getJarContentsStore();
+        if (store != null) {
+            try {
+                jarContents.load(store);
+            } catch (IOException e) {
+                getLog().debug(() -> "Ignoring class index cache for " + jarContents.getFile() + ": " + e.getMessage());
+            }
         }
-        return artifacts;
     }
 
-    private Collection<DependencyNode> collectProjectDependencies() throws DependencyCollectionException {
+    /**
+     * @return the build directory of the current project, or {@code null} if there is none
+     */
+    protected File getBuildDirectory() {
+        if (session == null || session.getCurrentProject() == null) {
+            return null;
+        }
+        String directory = session.getCurrentProject().getBuild().getDirectory();
+        return directory == null ? null : new File(directory);
+    }
+
+    /**
+     * @return a new executor to inspect artifacts with the configured parallelism
+     */
+    ScanExecutor createScanExecutor() {
+        return ScanExecutor.create(parallelism, useVirtualThreads);
+    }
+
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the number of class entries from which on a jar is inspected in parallel ranges, {@code 0} for never
+     */
+    int getParallelEntryThreshold() {
+        return parallelEntryThreshold;
+    }
+
+    void setParallelEntryThreshold(int parallelEntryThreshold) {
+        this.parallelEntryThreshold = parallelEntryThreshold;
+    }
+
+    void setReuseProjectArtifacts(boolean reuseProjectArtifacts) {
+        this.reuseProjectArtifacts = reuseProjectArtifacts;
+    }
+
+    void setSearchTransitive(boolean searchTransitive) {
+        this.searchTransitive = searchTransitive;
+    }
+
+    void setIgnoredScopes(List<String> ignoredScopes) {
+        this.ignoredScopes = ignoredScopes;
+    }
+
+    void setPruneFilteredDependencies(boolean pruneFilteredDependencies) {
+        this.pruneFilteredDependencies = pruneFilteredDependencies;
+    }
+
+    private synchronized JarContentsStore getJarContentsStore() {
+        if (!useClassIndexCache) {
+            return null;
+        }
+        if (jarContentsStore == null) {
+            File directory = classIndexCacheDirectory;
+            if (directory == null) {
+                directory = new File(
+                        session.getRepositorySession().getLocalRepository().getBasedir(),
+                        ".cache/extra-enforcer-rules/class-index");
+            }
+            jarContentsStore = new JarContentsStore(directory.toPath());
+        }
+        return jarContentsStore;
+    }
+
+    private void releaseJarContents() {
+        for (JarContents jarContents : usedJarContents) {
+            releaseJarContents(jarContents);
+        }
+        usedJarContents.clear();
+    }
+
+    /**
+     * Update the persistent class index cache with the contents of a jar and close the jar file. The jar file is
+     * opened again if more is requested from the contents.
+     *
+     * @param jarContents the contents of the jar file
+     */
+    protected void releaseJarContents(JarContents jarContents) {
+        JarContentsStore store = getJarContentsStore();
+        if (store != null) {
+            try {
+                // before the release, the names are written from the central directory
+                jarContents.save(store);
+            } catch (IOException e) {
+                getLog().warn("Unable to update class index cache for " + jarContents.getFile() + ": "
+                        + e.getMessage());
+            }
+        }
+        jarContents.release();
+    }
+
+    protected abstract void handleArtifacts(Set<Artifact> artifacts) throws EnforcerRuleException;
+
+    /**
+     * @return {@code true} (default) if the rule reads the files of the artifacts, {@code false} if their coordinates
+     *         are enough, which skips their resolution and therefore any download
+     */
+    protected boolean requiresArtifactFiles() {
+        return true;
+    }
 
+    /**
+     * Only asked when the rule doesn't require the files of the artifacts.
+     *
+     * @param artifact a dependency of the project, without a file
+     * @return {@code true} if the collection of dependencies may stop at this one, as it is all the rule has to know
+     */
+    protected boolean stopsSearchAt(Artifact artifact) {
+        return false;
+    }
+
+    /**
+     * @return the filter of the artifacts to check, the others are neither resolved nor checked, or {@code null}
+     *         (default) to check all artifacts
+     */
+    protected ArtifactFilter getArtifactFilter() {
+        return null;
+    }
+
+    private Set<Artifact> getDependenciesToCheck() throws EnforcerRuleException {
+        if (reuseProjectArtifacts) {
+            Set<Artifact> projectArtifacts = getResolvedProjectArtifacts();
+            if (projectArtifacts != null) {
+                return projectArtifacts;
+            }
+        }
+
+        MavenProject project = session.getCurrentProject();
         ArtifactTypeRegistry artifactTypeRegistry =
                 session.getRepositorySession().getArtifactTypeRegistry();
 
-        DependencyFilter optionalFilter = createOptionalFilter();
-        DependencyFilter scopeFilter = createScopeDependencyFilter();
-        DependencyFilter dependencyFilter = AndDependencyFilter.newInstance(optionalFilter, scopeFilter);
+        DependencyFilter dependencyFilter =
+                AndDependencyFilter.newInstance(createOptionalFilter(), createScopeDependencyFilter());
 
-        List<org.eclipse.aether.graph.Dependency> dependencies = session.getCurrentProject().getDependencies().stream()
+        List<Dependency> dependencies = project.getDependencies().stream()
                 .map(d -> RepositoryUtils.toDependency(d, artifactTypeRegistry))
-                .filter(d -> dependencyFilter == null
-                        || dependencyFilter.accept(new DefaultDependencyNode(d), Collections.emptyList()))
+                .filter(d -> accepts(dependencyFilter, d))
                 .collect(Collectors.toList());
 
-        List<Dependency> managedDependencies = Optional.ofNullable(
-                        session.getCurrentProject().getDependencyManagement())
+        List<Dependency> managedDependencies = Optional.ofNullable(project.getDependencyManagement())
                 .map(DependencyManagement::getDependencies)
                 .map(list -> list.stream()
                         .map(d -> RepositoryUtils.toDependency(d, artifactTypeRegistry))
                         .collect(Collectors.toList()))
                 .orElse(null);
 
+        // rules checking the same project with the same filters share the collected graph and resolved artifacts
+        List<Object> collectKey = Arrays.asList(
+                project.getId(),
+                dependencies,
+                managedDependencies,
+                pruneFilteredDependencies ? Arrays.asList(scopes, ignoredScopes, ignoreOptionals) : null);
+        List<Object> dependenciesKey =
+                Arrays.asList(collectKey, scopes, ignoredScopes, ignoreOptionals, searchTransitive);
+        ArtifactFilter artifactFilter = getArtifactFilter();
+        Predicate<Dependency> stopsAt =
+                requiresArtifactFiles() ? null : dependency -> stopsSearchAt(toArtifact(dependency));
+        Predicate<DependencyNode> last = stopsAt == null ? node -> false : node -> stopsAt.test(node.getDependency());
+
+        // the declared dependencies already carry their managed versions, so without the transitive ones nothing has
+        // to be collected, unless a version range has to be resolved
+        boolean directOnly = !searchTransitive
+                && dependencies.stream()
+                        .noneMatch(d -> isVersionRange(d.getArtifact().getVersion()));
+        List<DependencyNode> directNodes =
+                dependencies.stream().map(DefaultDependencyNode::new).collect(Collectors.toList());
+
+        // a collection which stops early only serves this rule, so it isn't shared
+        ArtifactScanIndex.Resolution<Collection<DependencyNode>, DependencyCollectionException> collect =
+                () -> selectDependencyNodes(
+                        stopsAt == null
+                                ? scanIndex.getCollectResult(
+                                        collectKey,
+                                        () -> collectProjectDependencies(dependencies, managedDependencies, null))
+                                : collectProjectDependencies(dependencies, managedDependencies, stopsAt),
+                        dependencyFilter,
+                        last);
+        ArtifactScanIndex.Resolution<Set<Artifact>, RepositoryException> resolve = () -> {
+            if (directOnly) {
+                try {
+                    return resolveArtifacts(select(directNodes, artifactFilter));
+                } catch (ArtifactResolutionException e) {
+                    // e.g. a relocated dependency, which only the collection follows
+                    getLog().debug(() ->
+                            "Collecting dependencies since the declared ones can't be resolved: " + e.getMessage());
+                }
+            }
+            return resolveArtifacts(select(collect.resolve(), artifactFilter));
+        };
+        try {
+            if (!requiresArtifactFiles()) {
+                // only the coordinates are needed, so nothing is resolved
+                Collection<DependencyNode> nodes = directOnly ? directNodes : collect.resolve();
+                return select(nodes, artifactFilter).stream()
+                        .map(node -> toArtifact(node.getDependency()))
+                        .collect(Collectors.toSet());
+            }
+            if (artifactFilter != null) {
+                // the artifacts selected by the rule's own filter aren't shared
+                return resolve.resolve();
+            }
+            return scanIndex.getDependencies(dependenciesKey, resolve);
+        } catch (RepositoryException e) {
+            throw new EnforcerRuleError(e.getMessage(), e);
+        }
+    }
+
+    private static boolean isVersionRange(String version) {
+        return version.startsWith("[") || version.startsWith("(");
+    }
+
+    /**
+     * @return the nodes whose artifact passes the filter
+     */
+    private static Collection<DependencyNode> select(Collection<DependencyNode> nodes, ArtifactFilter artifactFilter) {
+        if (artifactFilter == null) {
+            return nodes;
+        }
+        return nodes.stream()
+                .filter(node -> artifactFilter.include(toArtifact(node.getDependency())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Select the dependencies to check from the artifacts Maven already resolved for the project.
+     *
+     * @return the artifacts, or {@code null} if the required dependencies aren't all resolved
+     */
+    private Set<Artifact> getResolvedProjectArtifacts() {
+        MavenProject project = session.getCurrentProject();
+        ArtifactTypeRegistry artifactTypeRegistry =
+                session.getRepositorySession().getArtifactTypeRegistry();
+        DependencyFilter dependencyFilter =
+                AndDependencyFilter.newInstance(createOptionalFilter(), createScopeDependencyFilter());
+
+        // the project artifacts only contain the scopes resolved so far, which must include every direct dependency
+        Set<String> projectArtifactKeys = project.getArtifacts().stream()
+                .map(Artifact::getDependencyConflictId)
+                .collect(Collectors.toSet());
+        for (org.apache.maven.model.Dependency dependency : project.getDependencies()) {
+            if (accepts(dependencyFilter, RepositoryUtils.toDependency(dependency, artifactTypeRegistry))
+                    && !projectArtifactKeys.contains(dependency.getManagementKey())) {
+                getLog().debug(() -> "Collecting dependencies since " + dependency + " isn't resolved yet");
+                return null;
+            }
+        }
+
+        ArtifactFilter artifactFilter = getArtifactFilter();
+        Set<Artifact> artifacts = new HashSet<>();
+        for (Artifact artifact : project.getArtifacts()) {
+            if (!accepts(dependencyFilter, RepositoryUtils.toDependency(artifact, null))
+                    || (artifactFilter != null && !artifactFilter.include(artifact))) {
+                continue;
+            }
+            List<String> trail = artifact.getDependencyTrail();
+            if (!searchTransitive && (trail == null || trail.size() > 2)) {
+                // the trail starts with the project itself
+                continue;
+            }
+            if (artifact.getFile() == null && requiresArtifactFiles()) {
+                getLog().debug(() -> "Collecting dependencies since " + artifact + " isn't resolved yet");
+                return null;
+            }
+            artifacts.add(artifact);
+        }
+        getLog().debug(() -> "Reusing " + artifacts.size() + " resolved artifacts of " + project.getId());
+        return artifacts;
+    }
+
+    private static boolean accepts(DependencyFilter dependencyFilter, Dependency dependency) {
+        return dependencyFilter == null
+                || dependencyFilter.accept(new DefaultDependencyNode(dependency), Collections.emptyList());
+    }
+
+    /**
+     * @param stopsAt tells whether the collection stops at a dependency, or {@code null} to collect the whole graph
+     */
+    private CollectResult collectProjectDependencies(
+            List<Dependency> dependencies, List<Dependency> managedDependencies, Predicate<Dependency> stopsAt)
+            throws DependencyCollectionException {
         CollectRequest collectRequest = new CollectRequest();
         collectRequest.setManagedDependencies(managedDependencies);
         collectRequest.setRepositories(session.getCurrentProject().getRemoteProjectRepositories());
         collectRequest.setDependencies(dependencies);
 
-        CollectResult collectResult =
-                repositorySystem.collectDependencies(session.getRepositorySession(), collectRequest);
+        RepositorySystemSession repositorySession = session.getRepositorySession();
+        DependencySelector selector = repositorySession.getDependencySelector();
+        if (pruneFilteredDependencies) {
+            selector = AndDependencySelector.newInstance(
+                    selector, new ScopeFilteringDependencySelector(scopes, ignoredScopes, ignoreOptionals));
+        }
+        if (stopsAt != null) {
+            // the stop comes last, so only a dependency which is part of the graph stops the collection
+            selector = AndDependencySelector.newInstance(selector, new StoppingDependencySelector(stopsAt));
+        }
+        if (selector != repositorySession.getDependencySelector()) {
+            DefaultRepositorySystemSession selectingSession = new DefaultRepositorySystemSession(repositorySession);
+            selectingSession.setDependencySelector(selector);
+            repositorySession = selectingSession;
+        }
+        return repositorySystem.collectDependencies(repositorySession, collectRequest);
+    }
 
+    /**
+     * @param last tells whether the traversal of the graph stops at an accepted node
+     */
+    private Collection<DependencyNode> selectDependencyNodes(
+            CollectResult collectResult, DependencyFilter dependencyFilter, Predicate<DependencyNode> last) {
         Set<DependencyNode> collectedDependencyNodes = new HashSet<>();
         collectResult.getRoot().accept(new DependencyVisitor() {
 
             int depth;
 
+            boolean stopped;
+
             @Override
             public boolean visitEnter(org.eclipse.aether.graph.DependencyNode node) {
                 if ((dependencyFilter == null || dependencyFilter.accept(node, Collections.emptyList()))
                         && node.getArtifact() != null) {
                     collectedDependencyNodes.add(node);
+                    stopped = last.test(node);
                 }
                 depth++;
-                return searchTransitive || depth <= 1;
+                return !stopped && (searchTransitive || depth <= 1);
             }
 
             @Override
             public boolean visitLeave(org.eclipse.aether.graph.DependencyNode node) {
                 depth--;
-                return true;
+                return !stopped;
             }
         });
 
@@ -188,17 +564,36 @@ abstract class AbstractResolveDependencies extends AbstractEnforcerRule {
         return artifactResult.stream()
                 .map(result ->
                         result.getRequest().getDependencyNode().getDependency().setArtifact(result.getArtifact()))
-                .map(dependency -> {
-                    Artifact artifact = RepositoryUtils.toArtifact(dependency.getArtifact());
-                    artifact.setScope(dependency.getScope());
-                    if (dependency.getOptional() != null) {
-                        artifact.setOptional(dependency.getOptional());
-                    }
-                    return artifact;
-                })
+                .map(AbstractResolveDependencies::toArtifact)
                 .collect(Collectors.toSet());
     }
 
+    private static Artifact toArtifact(Dependency dependency) {
+        Artifact artifact = RepositoryUtils.toArtifact(dependency.getArtifact());
+        artifact.setScope(dependency.getScope());
+        if (dependency.getOptional() != null) {
+            artifact.setOptional(dependency.getOptional());
+        }
+        return artifact;
+    }
+
+    /**
+     * Compile the classes to ignore of several dependencies into a single matcher. The owner of each wildcard is the
+     * index of its dependency in the list.
+     *
+     * @param ignorableDependencies the ignorable dependencies
+     * @return the matcher
+     */
+    static ClassNameMatcher compileIgnores(List<IgnorableDependency> ignorableDependencies) {
+        ClassNameMatcher.Builder builder = ClassNameMatcher.builder();
+        for (int i = 0; i < ignorableDependencies.size(); i++) {
+            for (String wildcard : ignorableDependencies.get(i).wildcards) {
+                builder.add(wildcard, i);
+            }
+        }
+        return builder.build();
+    }
+
     /**
      * Convert a wildcard into a regex.
      *
@@ -255,13 +650,27 @@ abstract class AbstractResolveDependencies extends AbstractEnforcerRule {
 
         public List<Pattern> ignores = new ArrayList<>();
 
+        /** the wildcards of the {@link #ignores}, compiled into a single {@link ClassNameMatcher} */
+        private final List<String> wildcards = new ArrayList<>();
+
+        private ClassNameMatcher matcher;
+
+        /** the dependencies the classes are ignored in, only used for logging */
+        private String owner = "all dependencies";
+
+        void setOwner(String owner) {
+            this.owner = owner;
+        }
+
         public void applyIgnoreClasses(String[] ignores, boolean indent) {
             String prefix = indent ? "  " : "";
             for (String ignore : ignores) {
-                String pattern = asRegex(ignore.replace('.', '/'));
-                getLog().debug(() -> prefix + "Ignore: " + ignore + " maps to regex " + pattern);
-                this.ignores.add(Pattern.compile(pattern));
+                String wildcard = ignore.replace('.', '/');
+                getLog().debug(() -> prefix + "Ignore: " + wildcard + " in " + owner);
+                this.ignores.add(Pattern.compile(asRegex(wildcard)));
+                wildcards.add(wildcard);
             }
+            matcher = null;
         }
 
         public boolean matchesArtifact(Artifact dup) {
@@ -274,12 +683,19 @@ abstract class AbstractResolveDependencies extends AbstractEnforcerRule {
         }
 
         public boolean matches(String className) {
-            for (Pattern p : ignores) {
-                if (p.matcher(className).matches()) {
-                    return true;
+            if (ignores.size() != wildcards.size()) {
+                // the patterns were changed directly, so they don't correspond to the wildcards anymore
+                for (Pattern p : ignores) {
+                    if (p.matcher(className).matches()) {
+                        return true;
+                    }
                 }
+                return false;
+            }
+            if (matcher == null) {
+                matcher = compileIgnores(Collections.singletonList(this));
             }
-            return false;
+            return matcher.matches(className);
         }
     }
 }
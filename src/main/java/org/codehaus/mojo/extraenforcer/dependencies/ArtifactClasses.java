@@ -0,0 +1,270 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * The class files found in a single artifact, either a jar file or a directory.
+ * <p>
+ * Instances are created by the scanning threads, class files which should be ignored are marked during the scan
+ * so the (sequential) duplicate detection only has to skip them. The names of the class files in a jar are only
+ * decoded on request, their hashes are computed on the raw bytes of the central directory.
+ */
+class ArtifactClasses {
+    private final Artifact artifact;
+
+    private final int size;
+
+    /** the paths of the class files in a directory, {@code null} for a jar */
+    private final List<String> classFilePaths;
+
+    private final IntFunction<ContentDigestSupplier> digestSuppliers;
+
+    /** the contents of the jar, {@code null} for a directory */
+    private final JarContents jarContents;
+
+    /** the sizes of the class files in a directory, {@code null} for a jar */
+    private final IntToLongFunction directorySizes;
+
+    private final BitSet ignored = new BitSet();
+
+    private long[] nameHashes;
+
+    private ArtifactClasses(
+            Artifact artifact,
+            int size,
+            List<String> classFilePaths,
+            IntFunction<ContentDigestSupplier> digestSuppliers,
+            JarContents jarContents,
+            IntToLongFunction directorySizes) {
+        this.artifact = artifact;
+        this.size = size;
+        this.classFilePaths = classFilePaths;
+        this.digestSuppliers = digestSuppliers;
+        this.jarContents = jarContents;
+        this.directorySizes = directorySizes;
+    }
+
+    /**
+     * @param artifact the artifact
+     * @param jarContents the contents of the artifact's jar file
+     * @param algorithm the algorithm to digest the content of the class files with
+     * @return the class files of the jar
+     * @throws IOException if the jar file can't be read
+     */
+    static ArtifactClasses ofJar(Artifact artifact, JarContents jarContents, ContentHashAlgorithm algorithm)
+            throws IOException {
+        return new ArtifactClasses(
+                artifact,
+                jarContents.getClassEntryCount(),
+                null,
+                index -> () -> jarContents.getDigest(index, algorithm),
+                jarContents,
+                null);
+    }
+
+    /**
+     * Walk a directory for its class files, their sizes are taken from the walk and their content is only read when
+     * its digest is requested.
+     *
+     * @param artifact the artifact
+     * @param directory the artifact's directory
+     * @param algorithm the algorithm to digest the content of the class files with
+     * @return the class files of the directory, their paths are relative to the directory and separated by {@code /}
+     * @throws IOException if the directory can't be read
+     */
+    static ArtifactClasses ofDirectory(Artifact artifact, Path directory, ContentHashAlgorithm algorithm)
+            throws IOException {
+        List<String> classFilePaths = new ArrayList<>();
+        long[][] sizes = {new long[64]};
+        Files.walkFileTree(
+                directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                        Path name = file.getFileName();
+                        if (attributes.isRegularFile()
+                                && name != null
+                                && name.toString().endsWith(".class")) {
+                            int index = classFilePaths.size();
+                            if (index == sizes[0].length) {
+                                sizes[0] = Arrays.copyOf(sizes[0], index * 2);
+                            }
+                            sizes[0][index] = attributes.size();
+                            classFilePaths.add(toClassFilePath(directory.relativize(file)));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+        long[] classFileSizes = sizes[0];
+        return new ArtifactClasses(
+                artifact,
+                classFilePaths.size(),
+                classFilePaths,
+                index -> () -> algorithm.digest(directory.resolve(classFilePaths.get(index))),
+                null,
+                index -> classFileSizes[index]);
+    }
+
+    private static String toClassFilePath(Path relativePath) {
+        StringBuilder path = new StringBuilder();
+        for (Path element : relativePath) {
+            if (path.length() > 0) {
+                path.append('/');
+            }
+            path.append(element);
+        }
+        return path.toString();
+    }
+
+    /**
+     * @return the artifact the class files were found in
+     */
+    Artifact getArtifact() {
+        return artifact;
+    }
+
+    /**
+     * @return the contents of the jar the class files were found in, {@code null} for a directory
+     */
+    JarContents getJarContents() {
+        return jarContents;
+    }
+
+    /**
+     * @return {@code true} if the class files were found in a directory, {@code false} for a jar
+     */
+    boolean isDirectory() {
+        return jarContents == null;
+    }
+
+    /**
+     * @return the number of class files
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of the class file
+     * @return the path of the class file. Example: org/apache/maven/Stuff.class
+     * @throws IOException if the jar file can't be read
+     */
+    String getClassFilePath(int index) throws IOException {
+        return jarContents != null ? jarContents.getClassEntryName(index) : classFilePaths.get(index);
+    }
+
+    /**
+     * @param index the index of the class file
+     * @return the path of the class file, only valid until the next request as it may be a view of the jar file's
+     *            central directory
+     * @throws IOException if the jar file can't be read
+     */
+    CharSequence getClassFilePathChars(int index) throws IOException {
+        return jarContents != null ? jarContents.getClassEntryNameChars(index) : classFilePaths.get(index);
+    }
+
+    /**
+     * @param index the index of the class file
+     * @param classFilePath the path of the class file as returned by {@link #getClassFilePath(int)}
+     * @return a new class file, its content is only read when its digest is requested
+     * @throws IOException if the jar file can't be read
+     */
+    ClassFile newClassFile(int index, String classFilePath) throws IOException {
+        if (jarContents != null) {
+            return new ClassFile(
+                    classFilePath,
+                    artifact,
+                    digestSuppliers.apply(index),
+                    jarContents.getCrc(index),
+                    jarContents.getSize(index),
+                    jarContents);
+        }
+        return new ClassFile(
+                classFilePath,
+                artifact,
+                digestSuppliers.apply(index),
+                ClassFile.UNKNOWN,
+                directorySizes.applyAsLong(index));
+    }
+
+    /**
+     * @return the {@link ClassNameHashes#hash(String) hashes} of the class file paths, computed on first request
+     * @throws IOException if the jar file can't be read
+     */
+    long[] getNameHashes() throws IOException {
+        computeNameHashes(0);
+        return nameHashes;
+    }
+
+    /**
+     * The names in a jar are hashed without decoding them.
+     *
+     * @param parallelThreshold the number of class files from which on the hashes are computed in parallel ranges,
+     *            {@code 0} for never
+     * @throws IOException if the jar file can't be read
+     */
+    void computeNameHashes(int parallelThreshold) throws IOException {
+        if (nameHashes == null) {
+            long[] hashes = new long[size];
+            EntryRanges.forEach(hashes.length, parallelThreshold, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    hashes[i] = jarContents != null
+                            ? jarContents.getClassNameHash(i)
+                            : ClassNameHashes.hash(classFilePaths.get(i));
+                }
+            });
+            nameHashes = hashes;
+        }
+    }
+
+    /**
+     * Drop the hashes once they were copied elsewhere, they are computed again on request.
+     */
+    void releaseNameHashes() {
+        nameHashes = null;
+    }
+
+    /**
+     * @param index the index of a class file to ignore, may be invoked concurrently for different class files
+     */
+    synchronized void ignore(int index) {
+        ignored.set(index);
+    }
+
+    boolean isIgnored(int index) {
+        return ignored.get(index);
+    }
+}
@@ -0,0 +1,174 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.inject.Named;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.maven.SessionScoped;
+import org.apache.maven.artifact.Artifact;
+import org.eclipse.aether.collection.CollectResult;
+
+/**
+ * Session-scoped index of the dependencies and jar files inspected by the dependency rules.
+ * <p>
+ * Every rule extending {@link AbstractResolveDependencies} shares this index, so a jar used by several rules or by
+ * several modules of a reactor is only read once per build. Jars are keyed by their path, size and last modification
+ * time, a rebuilt jar therefore gets a fresh entry.
+ * <p>
+ * The dependency graph of a project is also only collected and resolved once when several rules check the same
+ * project, the rules provide keys of everything the result depends on.
+ * <p>
+ * The index is bounded, beyond {@value #MAX_JARS} jars and {@value #MAX_GRAPHS} dependency graphs the least recently
+ * used ones are dropped. A dropped jar is read again when requested, usually from the {@link JarContentsStore}.
+ */
+@Named
+@SessionScoped
+public class ArtifactScanIndex {
+    /** the number of jars kept in the index */
+    static final int MAX_JARS = 1024;
+
+    /** the number of dependency graphs and of resolved dependency sets kept, enough for the rules of a project */
+    static final int MAX_GRAPHS = 32;
+
+    private final Map<Key, JarContents> jars;
+
+    private final Map<List<Object>, CollectResult> collectResults;
+
+    private final Map<List<Object>, Set<Artifact>> dependencies;
+
+    public ArtifactScanIndex() {
+        this(MAX_JARS, MAX_GRAPHS);
+    }
+
+    ArtifactScanIndex(int maxJars, int maxGraphs) {
+        jars = newLeastRecentlyUsedMap(maxJars);
+        collectResults = newLeastRecentlyUsedMap(maxGraphs);
+        dependencies = newLeastRecentlyUsedMap(maxGraphs);
+    }
+
+    /**
+     * Computes a value which may fail, e.g. by collecting or resolving dependencies.
+     */
+    @FunctionalInterface
+    interface Resolution<T, E extends Exception> {
+        T resolve() throws E;
+    }
+
+    /**
+     * @param file the jar file
+     * @return the (lazily populated) contents of the jar file
+     */
+    public JarContents getJarContents(File file) {
+        File absoluteFile = file.getAbsoluteFile();
+        Key key = new Key(absoluteFile.getPath(), absoluteFile.length(), absoluteFile.lastModified());
+        return jars.computeIfAbsent(key, k -> new JarContents(absoluteFile));
+    }
+
+    /**
+     * @return the number of jar files in the index
+     */
+    int getJarCount() {
+        return jars.size();
+    }
+
+    /**
+     * @param key the project, its dependencies and its managed dependencies the graph is collected for
+     * @param collect collects the dependency graph if it isn't known yet
+     * @return the collected dependency graph
+     * @throws E if the dependency graph can't be collected
+     */
+    <E extends Exception> CollectResult getCollectResult(List<Object> key, Resolution<CollectResult, E> collect)
+            throws E {
+        return get(collectResults, key, collect);
+    }
+
+    /**
+     * @param key the collected graph and the filters the dependencies are selected with
+     * @param resolve selects and resolves the dependencies if they aren't known yet
+     * @return the resolved dependencies, which must not be modified
+     * @throws E if the dependencies can't be resolved
+     */
+    <E extends Exception> Set<Artifact> getDependencies(List<Object> key, Resolution<Set<Artifact>, E> resolve)
+            throws E {
+        return get(dependencies, key, () -> Collections.unmodifiableSet(resolve.resolve()));
+    }
+
+    private static <T, E extends Exception> T get(
+            Map<List<Object>, T> values, List<Object> key, Resolution<T, E> resolution) throws E {
+        T value = values.get(key);
+        if (value == null) {
+            // not computed within the map, the rules of one project run one after the other anyway
+            value = resolution.resolve();
+            T previous = values.putIfAbsent(key, value);
+            if (previous != null) {
+                value = previous;
+            }
+        }
+        return value;
+    }
+
+    private static <K, V> Map<K, V> newLeastRecentlyUsedMap(int capacity) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    private static final class Key {
+        private final String path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private Key(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return size == other.size && lastModified == other.lastModified && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified);
+        }
+    }
+}
@@ -43,8 +43,9 @@ public class BanCircularDependencies extends AbstractResolveDependencies {
     private String message;
 
     @Inject
-    public BanCircularDependencies(MavenSession session, RepositorySystem repositorySystem) {
-        super(session, repositorySystem);
+    public BanCircularDependencies(
+            MavenSession session, RepositorySystem repositorySystem, ArtifactScanIndex scanIndex) {
+        super(session, repositorySystem, scanIndex);
         project = session.getCurrentProject();
     }
 
@@ -62,6 +63,17 @@ public class BanCircularDependencies extends AbstractResolveDependencies {
         }
     }
 
+    @Override
+    protected boolean requiresArtifactFiles() {
+        return false;
+    }
+
+    @Override
+    protected boolean stopsSearchAt(Artifact artifact) {
+        return artifact.getGroupId().equals(project.getGroupId())
+                && artifact.getArtifactId().equals(project.getArtifactId());
+    }
+
     private String getErrorMessage() {
         if (message == null) {
             return "Circular Dependency found. Your project's groupId:artifactId combination "
@@ -24,24 +24,23 @@ import javax.inject.Named;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.enforcer.rule.api.EnforcerRuleError;
 import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
 import org.apache.maven.execution.MavenSession;
-import org.codehaus.plexus.util.FileUtils;
 import org.eclipse.aether.RepositorySystem;
 
 import static org.codehaus.mojo.extraenforcer.dependencies.JarUtils.isJarFile;
@@ -86,9 +85,52 @@ public class BanDuplicateClasses extends AbstractResolveDependencies {
      */
     private boolean ignoreWhenIdentical;
 
+    /**
+     * The function to compare the bytecode with when {@code ignoreWhenIdentical} is set, either {@code SHA_256}
+     * (default) or the faster, non-cryptographic {@code MURMUR3_128}.
+     */
+    private ContentHashAlgorithm contentHash = ContentHashAlgorithm.SHA_256;
+
+    /**
+     * If {@code true} duplicates are found by sorting hashes of the class names, instead of keeping every class in a
+     * map. This needs far less memory for huge classpaths. Default is {@code false}.
+     */
+    private boolean sortBasedDetection;
+
+    /**
+     * Maximum size in megabytes of the class name hashes kept in memory, implies {@code sortBasedDetection}. Once
+     * reached the sorted hashes are spilled to {@code spillDirectory} and merged afterwards, so the memory needed
+     * doesn't grow with the classpath. The jars are not kept in the index shared with other rules either, they are
+     * read a second time for the classes whose name hash occurs more than once. Default is {@code 0}, which keeps all
+     * hashes in memory.
+     */
+    private int classTableMemoryBudget;
+
+    /**
+     * Directory for the class name hashes spilled because of {@code classTableMemoryBudget}, defaults to
+     * {@code extra-enforcer-rules} in the build directory of the project.
+     */
+    private File spillDirectory;
+
+    /**
+     * File to stream every duplicate class to in the JSON lines format when {@code findAllDuplicates} is set, one
+     * object per class with the artifacts it was found in. Defaults to
+     * {@code extra-enforcer-rules/duplicate-classes.jsonl} in the build directory of the project, no file is written
+     * by default if {@code maxReportedGroups} is {@code 0}.
+     */
+    private File reportFile;
+
+    /**
+     * Maximum number of artifact groups listed in the failure message when {@code findAllDuplicates} is set, only the
+     * first groups found are listed with up to 100 of their classes each. Default is {@code 10},
+     * {@code 0} lists every group with all of its duplicate classes.
+     */
+    private int maxReportedGroups = 10;
+
     @Inject
-    protected BanDuplicateClasses(MavenSession session, RepositorySystem repositorySystem) {
-        super(session, repositorySystem);
+    protected BanDuplicateClasses(
+            MavenSession session, RepositorySystem repositorySystem, ArtifactScanIndex scanIndex) {
+        super(session, repositorySystem, scanIndex);
     }
 
     @Override
@@ -106,6 +148,7 @@ public class BanDuplicateClasses extends AbstractResolveDependencies {
             for (Dependency dependency : dependencies) {
                 getLog().info("Adding ignorable dependency: " + dependency);
                 IgnorableDependency ignorableDependency = new IgnorableDependency();
+                ignorableDependency.setOwner(dependency.toString());
                 if (dependency.getGroupId() != null) {
                     ignorableDependency.groupId = Pattern.compile(asRegex(dependency.getGroupId()));
                 }
@@ -123,108 +166,491 @@ public class BanDuplicateClasses extends AbstractResolveDependencies {
             }
         }
 
+        ClassNameMatcher ignoreMatcher = compileIgnores(ignorableDependencies);
         Map<String, ClassesWithSameName> classesSeen = new HashMap<>();
         Set<String> duplicateClassNames = new HashSet<>();
-        for (Artifact o : artifacts) {
-            File file = o.getFile();
-            getLog().debug(() -> "Searching for duplicate classes in " + file);
-            if (file == null || !file.exists()) {
-                getLog().warn("Could not find " + o + " at " + file);
-            } else if (file.isDirectory()) {
-                try {
-                    for (String name : FileUtils.getFileNames(file, null, null, false)) {
-                        getLog().debug("  " + name);
-                        checkAndAddName(
-                                o,
-                                name,
-                                () -> Files.newInputStream(file.toPath().resolve(name)),
-                                classesSeen,
-                                duplicateClassNames,
-                                ignorableDependencies);
-                    }
-                } catch (IOException e) {
-                    throw new EnforcerRuleError(
-                            "Unable to process dependency " + o + " due to " + e.getLocalizedMessage(), e);
+        File file = getReportFile();
+        try (DuplicateClassesReport report =
+                new DuplicateClassesReport(message, maxReportedGroups, file == null ? null : file.toPath())) {
+            findDuplicates(artifacts, ignorableDependencies, ignoreMatcher, classesSeen, duplicateClassNames, report);
+            for (String className : duplicateClassNames) {
+                addToReport(report, className, classesSeen.get(className));
+            }
+            if (report.getCount() > 0) {
+                throw new EnforcerRuleException(report.getMessage());
+            }
+        } catch (IOException e) {
+            throw new EnforcerRuleError(
+                    "Unable to write the duplicate classes to " + file + " due to " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Find the duplicate classes. The classes which are known to be complete are added to the report right away and
+     * dropped, the others are left in {@code classesSeen} and {@code duplicateClassNames}.
+     */
+    private void findDuplicates(
+            Set<Artifact> artifacts,
+            List<IgnorableDependency> ignorableDependencies,
+            ClassNameMatcher ignoreMatcher,
+            Map<String, ClassesWithSameName> classesSeen,
+            Set<String> duplicateClassNames,
+            DuplicateClassesReport report)
+            throws EnforcerRuleException {
+        List<ArtifactClasses> scanned = new ArrayList<>();
+        ClassNameHashTable nameHashes = new ClassNameHashTable(getParallelEntryThreshold());
+        if (classTableMemoryBudget > 0) {
+            List<JarContents> candidateJars = new ArrayList<>();
+            try {
+                checkWithinBudget(
+                        artifacts,
+                        ignorableDependencies,
+                        ignoreMatcher,
+                        classesSeen,
+                        duplicateClassNames,
+                        candidateJars);
+                // the jars are only released once the identical classes were compared
+                for (String className : duplicateClassNames) {
+                    addToReport(report, className, classesSeen.get(className));
                 }
-            } else if (isJarFile(o)) {
-                try {
-                    // @todo use UnArchiver as defined per type
-                    try (JarFile jar = new JarFile(file)) {
-                        for (JarEntry entry : Collections.list(jar.entries())) {
-                            String fileName = entry.getName();
-
-                            checkAndAddName(
-                                    o,
-                                    fileName,
-                                    () -> jar.getInputStream(entry),
-                                    classesSeen,
-                                    duplicateClassNames,
-                                    ignorableDependencies);
+                duplicateClassNames.clear();
+            } finally {
+                candidateJars.forEach(this::releaseJarContents);
+            }
+            return;
+        }
+        try (ScanExecutor scanExecutor = createScanExecutor()) {
+            scanExecutor.forEachOrdered(
+                    new ArrayList<>(artifacts),
+                    artifact -> {
+                        ArtifactClasses classes = scan(artifact, ignorableDependencies, ignoreMatcher);
+                        if (classes != null && sortBasedDetection) {
+                            computeNameHashes(classes);
                         }
+                        return classes;
+                    },
+                    (artifact, classes) -> {
+                        File file = artifact.getFile();
+                        getLog().debug(() -> "Searching for duplicate classes in " + file);
+                        if (file == null || !file.exists()) {
+                            getLog().warn("Could not find " + artifact + " at " + file);
+                        } else if (classes != null && sortBasedDetection) {
+                            logClassFilePaths(classes);
+                            scanned.add(classes);
+                            addNameHashes(nameHashes, classes);
+                        } else if (classes != null) {
+                            logClassFilePaths(classes);
+                            checkAndAddNames(classes, null, classesSeen, duplicateClassNames);
+                        }
+                        return true;
+                    });
+        }
+        if (sortBasedDetection && !findAllDuplicates) {
+            // failing fast reports the first duplicate in the order of the artifacts, like the other detections
+            LongStream.Builder duplicates = LongStream.builder();
+            int count = nameHashes.forEachDuplicateGroup((references, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    duplicates.add(references[i]);
+                }
+            });
+            getLog().debug(() -> count + " class names may be duplicated");
+            for (long reference : duplicates.build().sorted().toArray()) {
+                ArtifactClasses classes = scanned.get(ClassNameHashTable.artifactIndex(reference));
+                checkAndAddClass(classes, ClassNameHashTable.classIndex(reference), classesSeen, duplicateClassNames);
+            }
+        } else if (sortBasedDetection) {
+            List<String> groupClassNames = new ArrayList<>();
+            int count = nameHashes.forEachDuplicateGroup((references, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    ArtifactClasses classes = scanned.get(ClassNameHashTable.artifactIndex(references[i]));
+                    String className = checkAndAddClass(
+                            classes, ClassNameHashTable.classIndex(references[i]), classesSeen, duplicateClassNames);
+                    if (className != null) {
+                        groupClassNames.add(className);
                     }
-                } catch (IOException e) {
-                    throw new EnforcerRuleError(
-                            "Unable to process dependency " + o + " due to " + e.getLocalizedMessage(), e);
                 }
+                // no other class has the same name hash, so these classes are complete
+                for (String className : groupClassNames) {
+                    ClassesWithSameName classesWithSameName = classesSeen.remove(className);
+                    if (classesWithSameName != null && duplicateClassNames.remove(className)) {
+                        addToReport(report, className, classesWithSameName);
+                    }
+                }
+                groupClassNames.clear();
+            });
+            getLog().debug(() -> count + " class names may be duplicated");
+        }
+    }
+
+    /**
+     * Find the duplicates with the class name hashes spilled to disk whenever they pass the memory budget. The
+     * artifacts are scanned twice, the second time only those with a class whose name hash occurs more than once are
+     * opened again, and only these classes are looked at.
+     * <p>
+     * The jars are not kept in the session-scoped index, each of them is released once it has been scanned. Only
+     * the jars with candidates are referenced afterwards, they are opened again to compare the content of their
+     * classes and added to {@code candidateJars} to be released once the duplicates were reported.
+     */
+    private void checkWithinBudget(
+            Set<Artifact> artifacts,
+            List<IgnorableDependency> ignorableDependencies,
+            ClassNameMatcher ignoreMatcher,
+            Map<String, ClassesWithSameName> classesSeen,
+            Set<String> duplicateClassNames,
+            List<JarContents> candidateJars)
+            throws EnforcerRuleException {
+        File directory = getSpillDirectory();
+        int capacity = (int) Math.min(Integer.MAX_VALUE, (classTableMemoryBudget * 1024L * 1024L) / Long.BYTES);
+
+        List<Artifact> scanned = new ArrayList<>();
+        long[] candidates;
+        List<Artifact> withCandidates;
+        try (ClassNameHashRuns runs = new ClassNameHashRuns(directory.toPath(), capacity);
+                ScanExecutor scanExecutor = createScanExecutor()) {
+            scanExecutor.forEachOrdered(
+                    new ArrayList<>(artifacts),
+                    artifact -> {
+                        ArtifactClasses classes = scan(artifact, ignorableDependencies, ignoreMatcher);
+                        if (classes == null) {
+                            return null;
+                        }
+                        try {
+                            return computeNameHashes(classes);
+                        } finally {
+                            classes.releaseNameHashes();
+                            releaseJar(classes);
+                        }
+                    },
+                    (artifact, nameHashes) -> {
+                        File file = artifact.getFile();
+                        getLog().debug(() -> "Searching for duplicate classes in " + file);
+                        if (file == null || !file.exists()) {
+                            getLog().warn("Could not find " + artifact + " at " + file);
+                        } else if (nameHashes != null) {
+                            try {
+                                runs.add(nameHashes);
+                            } catch (IOException e) {
+                                throw new EnforcerRuleError(
+                                        "Unable to spill class names to " + directory + " due to "
+                                                + e.getLocalizedMessage(),
+                                        e);
+                            }
+                            scanned.add(artifact);
+                        }
+                        return true;
+                    });
+            try {
+                candidates = runs.duplicates();
+            } catch (IOException e) {
+                throw new EnforcerRuleError(
+                        "Unable to merge class names in " + directory + " due to " + e.getLocalizedMessage(), e);
+            }
+            getLog().debug(() -> runs.getRunCount() + " runs of class names spilled to " + directory);
+            getLog().debug(() -> candidates.length + " class names may be duplicated");
+            try {
+                withCandidates = runs.getArraysWith(candidates).stream()
+                        .mapToObj(scanned::get)
+                        .collect(Collectors.toList());
+            } catch (IOException e) {
+                throw new EnforcerRuleError(
+                        "Unable to read class names in " + directory + " due to " + e.getLocalizedMessage(), e);
             }
+            getLog().debug(() -> withCandidates.size() + " of " + scanned.size() + " artifacts are scanned again");
+
+            scanExecutor.forEachOrdered(
+                    withCandidates,
+                    artifact -> {
+                        ArtifactClasses classes = scan(artifact, ignorableDependencies, ignoreMatcher);
+                        if (classes != null) {
+                            try {
+                                computeNameHashes(classes);
+                            } catch (EnforcerRuleError e) {
+                                releaseJar(classes);
+                                throw e;
+                            }
+                        }
+                        return classes;
+                    },
+                    (artifact, classes) -> {
+                        if (classes != null) {
+                            logClassFilePaths(classes);
+                            try {
+                                if (checkAndAddNames(classes, candidates, classesSeen, duplicateClassNames)
+                                        && classes.getJarContents() != null) {
+                                    candidateJars.add(classes.getJarContents());
+                                }
+                            } finally {
+                                releaseJar(classes);
+                            }
+                        }
+                        return true;
+                    });
         }
-        if (!duplicateClassNames.isEmpty()) {
-            Map<Set<Artifact>, List<String>> inverted = new HashMap<>();
-            for (String className : duplicateClassNames) {
-                ClassesWithSameName classesWithSameName = classesSeen.get(className);
-                Set<Artifact> artifactsOfDuplicateClass = classesWithSameName.getAllArtifactsThisClassWasFoundIn();
+    }
 
-                List<String> s = inverted.get(artifactsOfDuplicateClass);
-                if (s == null) {
-                    s = new ArrayList<>();
-                }
-                s.add(classesWithSameName.toOutputString(ignoreWhenIdentical));
-                inverted.put(artifactsOfDuplicateClass, s);
+    private void releaseJar(ArtifactClasses classes) {
+        if (classes.getJarContents() != null) {
+            releaseJarContents(classes.getJarContents());
+        }
+    }
+
+    private long[] computeNameHashes(ArtifactClasses classes) throws EnforcerRuleError {
+        try {
+            classes.computeNameHashes(getParallelEntryThreshold());
+            return classes.getNameHashes();
+        } catch (IOException e) {
+            throw new EnforcerRuleError(
+                    "Unable to process dependency " + classes.getArtifact() + " due to " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Move the name hashes of an artifact into the table, they aren't kept by the artifact.
+     */
+    private void addNameHashes(ClassNameHashTable table, ArtifactClasses classes) throws EnforcerRuleError {
+        table.add(computeNameHashes(classes));
+        classes.releaseNameHashes();
+    }
+
+    private File getSpillDirectory() {
+        if (spillDirectory != null) {
+            return spillDirectory;
+        }
+        File buildDirectory = getBuildDirectory();
+        return buildDirectory == null
+                ? new File(System.getProperty("java.io.tmpdir"))
+                : new File(buildDirectory, "extra-enforcer-rules");
+    }
+
+    private void addToReport(DuplicateClassesReport report, String className, ClassesWithSameName classesWithSameName)
+            throws EnforcerRuleException {
+        try {
+            List<Set<Artifact>> identicalIn = ignoreWhenIdentical
+                    ? classesWithSameName.getArtifactsWithIdenticalClasses()
+                    : Collections.emptyList();
+            report.add(
+                    className,
+                    classesWithSameName.getAllArtifactsThisClassWasFoundIn(),
+                    identicalIn,
+                    () -> classesWithSameName.toOutputString(ignoreWhenIdentical));
+        } catch (UncheckedIOException e) {
+            throw new EnforcerRuleError(
+                    "Unable to compare class " + className + " due to " + e.getLocalizedMessage(), e);
+        } catch (IOException e) {
+            throw new EnforcerRuleError(
+                    "Unable to write the duplicate classes to " + getReportFile() + " due to "
+                            + e.getLocalizedMessage(),
+                    e);
+        }
+    }
+
+    private File getReportFile() {
+        if (reportFile != null || maxReportedGroups <= 0) {
+            return reportFile;
+        }
+        File buildDirectory = getBuildDirectory();
+        return buildDirectory == null ? null : new File(buildDirectory, "extra-enforcer-rules/duplicate-classes.jsonl");
+    }
+
+    /**
+     * Find the class files of an artifact and mark the ones to ignore. This may run on any scanning thread.
+     * <p>
+     * Which classes to ignore is planned from the artifact coordinates first: an artifact whose classes are all
+     * ignored isn't opened at all, and classes under ignored packages are recognized as soon as their package prefix
+     * matched.
+     *
+     * @return the class files or {@code null} if the artifact is neither a jar file nor a directory, or if all of its
+     *         classes are ignored
+     */
+    private ArtifactClasses scan(
+            Artifact artifact, List<IgnorableDependency> ignorableDependencies, ClassNameMatcher ignoreMatcher)
+            throws EnforcerRuleException {
+        File file = artifact.getFile();
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        // the dependencies whose classes to ignore apply to this artifact
+        BitSet applicable = new BitSet();
+        for (int i = 0; i < ignorableDependencies.size(); i++) {
+            if (ignorableDependencies.get(i).matchesArtifact(artifact)) {
+                applicable.set(i);
             }
-            StringBuilder buf = new StringBuilder(message == null ? "Duplicate classes found:" : message);
-            buf.append('\n');
-            for (Map.Entry<Set<Artifact>, List<String>> entry : inverted.entrySet()) {
-                buf.append("\n  Found in:");
-                for (Artifact a : entry.getKey()) {
-                    buf.append("\n    ");
-                    buf.append(a);
-                }
-                buf.append("\n  Duplicate classes:");
-                for (String classNameWithDuplicationInfo : entry.getValue()) {
-                    buf.append("\n    ");
-                    buf.append(classNameWithDuplicationInfo);
+        }
+        if (!applicable.isEmpty() && ignoreMatcher.matchesEverything(applicable)) {
+            getLog().debug(() -> "  All classes of " + artifact + " are ignored");
+            return null;
+        }
+
+        ArtifactClasses classes;
+        try {
+            if (file.isDirectory()) {
+                classes = ArtifactClasses.ofDirectory(artifact, file.toPath(), contentHash);
+            } else if (isJarFile(artifact)) {
+                // @todo use UnArchiver as defined per type
+                // within a memory budget the jars aren't kept in the session-scoped index
+                JarContents jarContents = classTableMemoryBudget > 0 ? readJarContents(file) : getJarContents(file);
+                classes = ArtifactClasses.ofJar(artifact, jarContents, contentHash);
+            } else {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new EnforcerRuleError(
+                    "Unable to process dependency " + artifact + " due to " + e.getLocalizedMessage(), e);
+        }
+
+        if (!applicable.isEmpty()) {
+            ArtifactClasses artifactClasses = classes;
+            try {
+                EntryRanges.forEach(classes.size(), getParallelEntryThreshold(), (from, to) -> {
+                    // the classes of a package are usually next to each other, so once a wildcard like org/shaded/*
+                    // matched, the following classes only have to be compared with its prefix
+                    String ignoredPrefix = null;
+                    for (int i = from; i < to; i++) {
+                        CharSequence path = artifactClasses.getClassFilePathChars(i);
+                        if (ignoredPrefix != null && startsWith(path, ignoredPrefix)) {
+                            artifactClasses.ignore(i);
+                            continue;
+                        }
+                        int prefixLength = ignoreMatcher.matchedPrefixLength(path, applicable);
+                        if (prefixLength != ClassNameMatcher.NO_MATCH) {
+                            artifactClasses.ignore(i);
+                        }
+                        if (prefixLength != ClassNameMatcher.NO_MATCH && prefixLength != ClassNameMatcher.PATH_MATCH) {
+                            ignoredPrefix = path.subSequence(0, prefixLength).toString();
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                throw new EnforcerRuleError(
+                        "Unable to process dependency " + artifact + " due to " + e.getLocalizedMessage(), e);
+            }
+        }
+        return classes;
+    }
+
+    private static boolean startsWith(CharSequence path, String prefix) {
+        if (path.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (path.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void setIgnoreClasses(String[] ignoreClasses) {
+        this.ignoreClasses = ignoreClasses;
+    }
+
+    void setFindAllDuplicates(boolean findAllDuplicates) {
+        this.findAllDuplicates = findAllDuplicates;
+    }
+
+    void setSortBasedDetection(boolean sortBasedDetection) {
+        this.sortBasedDetection = sortBasedDetection;
+    }
+
+    void setClassTableMemoryBudget(int classTableMemoryBudget) {
+        this.classTableMemoryBudget = classTableMemoryBudget;
+    }
+
+    void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    void setIgnoreWhenIdentical(boolean ignoreWhenIdentical) {
+        this.ignoreWhenIdentical = ignoreWhenIdentical;
+    }
+
+    void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    void setMaxReportedGroups(int maxReportedGroups) {
+        this.maxReportedGroups = maxReportedGroups;
+    }
+
+    void setContentHash(ContentHashAlgorithm contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    private void logClassFilePaths(ArtifactClasses classes) throws EnforcerRuleError {
+        if (classes.isDirectory() && getLog().isDebugEnabled()) {
+            try {
+                for (int i = 0; i < classes.size(); i++) {
+                    String classFilePath = classes.getClassFilePath(i);
+                    getLog().debug(() -> "  " + classFilePath);
                 }
-                buf.append('\n');
+            } catch (IOException e) {
+                throw new EnforcerRuleError(
+                        "Unable to process dependency " + classes.getArtifact() + " due to " + e.getLocalizedMessage(),
+                        e);
             }
-            throw new EnforcerRuleException(buf.toString());
         }
     }
 
-    private void checkAndAddName(
-            Artifact artifact,
-            String pathToClassFile,
-            InputStreamSupplier inputStreamSupplier,
+    /**
+     * @param candidates if not {@code null} only classes whose name hash is one of these are checked, see
+     *            {@link ClassNameHashRuns#duplicates()}
+     * @return {@code true} if any class was added to {@code classesSeen}
+     */
+    private boolean checkAndAddNames(
+            ArtifactClasses classes,
+            long[] candidates,
             Map<String, ClassesWithSameName> classesSeen,
-            Set<String> duplicateClasses,
-            Collection<IgnorableDependency> ignores)
-            throws EnforcerRuleException, IOException {
-        if (!pathToClassFile.endsWith(".class")) {
-            return;
+            Set<String> duplicateClasses)
+            throws EnforcerRuleException {
+        long[] nameHashes = candidates == null ? null : computeNameHashes(classes);
+        boolean added = false;
+        for (int i = 0; i < classes.size(); i++) {
+            if (nameHashes == null || ClassNameHashes.isCandidate(candidates, nameHashes[i])) {
+                added |= checkAndAddClass(classes, i, classesSeen, duplicateClasses) != null;
+            }
         }
+        return added;
+    }
 
-        for (IgnorableDependency c : ignores) {
-            if (c.matchesArtifact(artifact) && c.matches(pathToClassFile)) {
+    /**
+     * @return the path of the class file if it was added, {@code null} if it is ignored
+     */
+    private String checkAndAddClass(
+            ArtifactClasses classes,
+            int index,
+            Map<String, ClassesWithSameName> classesSeen,
+            Set<String> duplicateClasses)
+            throws EnforcerRuleException {
+        try {
+            String pathToClassFile = classes.getClassFilePath(index);
+            if (classes.isIgnored(index)) {
                 if (classesSeen.containsKey(pathToClassFile)) {
                     getLog().debug("Ignoring excluded class " + pathToClassFile);
                 }
-                return;
+                return null;
             }
+            checkAndAddName(classes, index, pathToClassFile, classesSeen, duplicateClasses);
+            return pathToClassFile;
+        } catch (IOException | UncheckedIOException e) {
+            throw new EnforcerRuleError(
+                    "Unable to process dependency " + classes.getArtifact() + " due to " + e.getLocalizedMessage(), e);
         }
+    }
+
+    private void checkAndAddName(
+            ArtifactClasses classes,
+            int index,
+            String pathToClassFile,
+            Map<String, ClassesWithSameName> classesSeen,
+            Set<String> duplicateClasses)
+            throws EnforcerRuleException, IOException {
+        Artifact artifact = classes.getArtifact();
 
         ClassesWithSameName classesWithSameName = classesSeen.get(pathToClassFile);
         boolean isFirstTimeSeeingThisClass = (classesWithSameName == null);
 
-        ClassFile classFile = new ClassFile(pathToClassFile, artifact, inputStreamSupplier);
+        ClassFile classFile = classes.newClassFile(index, pathToClassFile);
 
         if (isFirstTimeSeeingThisClass) {
             classesSeen.put(pathToClassFile, new ClassesWithSameName(getLog(), classFile));
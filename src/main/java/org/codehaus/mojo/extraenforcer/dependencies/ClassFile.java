@@ -20,9 +20,8 @@ package org.codehaus.mojo.extraenforcer.dependencies;
  */
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.maven.artifact.Artifact;
 
 /**
@@ -44,12 +43,29 @@ import org.apache.maven.artifact.Artifact;
  * it's included in the Artifact. See {@link Artifact#getFile()}
  */
 public class ClassFile {
+    static final long UNKNOWN = -1;
+
     /** the path to the .class file. Example: org/apache/maven/Stuff.class */
     private final String classFilePath;
 
     private final Artifact artifactThisClassWasFoundIn;
+
+    /** deferred reference to the class content, cleared once the digest is known */
+    private ContentDigestSupplier digestSupplier;
+
+    private ContentDigest digest;
+
     private String hash;
 
+    /** the CRC-32 of the class content, {@link #UNKNOWN} if not known without reading it */
+    private final long crc;
+
+    /** the size of the class content, {@link #UNKNOWN} if not known without reading it */
+    private final long size;
+
+    /** the contents of the jar the class was found in, {@code null} if it wasn't found in a jar */
+    private final JarContents jarContents;
+
     /**
      * Constructor.
      * @param classFilePath path to the class file. Example: org/apache/maven/Stuff.class
@@ -57,17 +73,61 @@ public class ClassFile {
      * @param inputStreamSupplier a supplier for class content input stream
      */
     public ClassFile(
-            String classFilePath, Artifact artifactThisClassWasFoundIn, InputStreamSupplier inputStreamSupplier)
-            throws IOException {
-        this.classFilePath = classFilePath;
-        this.artifactThisClassWasFoundIn = artifactThisClassWasFoundIn;
-        this.hash = computeHash(inputStreamSupplier);
+            String classFilePath, Artifact artifactThisClassWasFoundIn, InputStreamSupplier inputStreamSupplier) {
+        this(
+                classFilePath,
+                artifactThisClassWasFoundIn,
+                () -> ContentHashAlgorithm.SHA_256.digest(inputStreamSupplier),
+                UNKNOWN,
+                UNKNOWN);
     }
 
-    private String computeHash(InputStreamSupplier inputStreamSupplier) throws IOException {
-        try (InputStream inputStream = inputStreamSupplier.get()) {
-            return DigestUtils.sha256Hex(inputStream);
-        }
+    /**
+     * Constructor.
+     * @param classFilePath path to the class file. Example: org/apache/maven/Stuff.class
+     * @param artifactThisClassWasFoundIn the maven artifact the class appeared in (example: a jar file)
+     * @param hashSupplier a supplier for the hex encoded SHA-256 hash of the class content, only invoked when the hash
+     *        is needed
+     */
+    ClassFile(String classFilePath, Artifact artifactThisClassWasFoundIn, ContentHashSupplier hashSupplier) {
+        this(
+                classFilePath,
+                artifactThisClassWasFoundIn,
+                () -> ContentDigest.ofHex(hashSupplier.get()),
+                UNKNOWN,
+                UNKNOWN);
+    }
+
+    /**
+     * Constructor for class files whose content is digested by a {@link ContentHashAlgorithm} and whose CRC-32 and
+     * size may be known without reading them, e.g. from the central directory of a jar or from a directory walk.
+     */
+    ClassFile(
+            String classFilePath,
+            Artifact artifactThisClassWasFoundIn,
+            ContentDigestSupplier digestSupplier,
+            long crc,
+            long size) {
+        this(classFilePath, artifactThisClassWasFoundIn, digestSupplier, crc, size, null);
+    }
+
+    /**
+     * Constructor for class files of a jar, which have the same content as the class files with the same path in
+     * jars with the same content.
+     */
+    ClassFile(
+            String classFilePath,
+            Artifact artifactThisClassWasFoundIn,
+            ContentDigestSupplier digestSupplier,
+            long crc,
+            long size,
+            JarContents jarContents) {
+        this.classFilePath = classFilePath;
+        this.artifactThisClassWasFoundIn = artifactThisClassWasFoundIn;
+        this.digestSupplier = digestSupplier;
+        this.crc = crc;
+        this.size = size;
+        this.jarContents = jarContents;
     }
 
     /**
@@ -85,10 +145,76 @@ public class ClassFile {
     }
 
     /**
+     * The hash is computed on first invocation, class files which are never compared are never read.
+     *
      * @return a hash or checksum of the binary file. If two files have the same hash
      * then they are the same binary file.
+     * @throws UncheckedIOException if the content of the class file can't be read
      */
     public String getHash() {
+        if (hash == null) {
+            hash = getDigest().toString();
+        }
         return hash;
     }
+
+    /**
+     * The digest is computed on first invocation, class files which are never compared are never read.
+     *
+     * @return the digest of the binary file
+     * @throws UncheckedIOException if the content of the class file can't be read
+     */
+    ContentDigest getDigest() {
+        if (digest == null) {
+            try {
+                digest = digestSupplier.get();
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        "Unable to read " + classFilePath + " of " + artifactThisClassWasFoundIn, e);
+            }
+            digestSupplier = null;
+        }
+        return digest;
+    }
+
+    /**
+     * @param other a class file with the same path
+     * @return {@code true} if both class files have the same content
+     * @throws UncheckedIOException if the content of a class file can't be read
+     */
+    boolean hasSameContentAs(ClassFile other) {
+        if (isKnownToDifferFrom(other)) {
+            return false;
+        }
+        return isFoundInSameJarContentAs(other) || getDigest().equals(other.getDigest());
+    }
+
+    /**
+     * Class files with the same path in jars with the same content have the same content, without digesting them.
+     *
+     * @param other a class file with the same path
+     * @return {@code true} if both class files were found in jars with the same content
+     * @throws UncheckedIOException if a jar file can't be read
+     */
+    boolean isFoundInSameJarContentAs(ClassFile other) {
+        if (jarContents == null || other.jarContents == null) {
+            return false;
+        }
+        try {
+            return jarContents.hasSameContentAs(other.jarContents);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + jarContents.getFile(), e);
+        }
+    }
+
+    /**
+     * @param other a class file with the same path
+     * @return {@code true} if the sizes or the CRC-32s of both class files are known and differ
+     */
+    boolean isKnownToDifferFrom(ClassFile other) {
+        if (size != UNKNOWN && other.size != UNKNOWN && size != other.size) {
+            return true;
+        }
+        return crc != UNKNOWN && other.crc != UNKNOWN && crc != other.crc;
+    }
 }
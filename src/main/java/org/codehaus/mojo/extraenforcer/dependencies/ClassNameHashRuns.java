@@ -0,0 +1,266 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the class name hashes which occur more than once in a fixed amount of memory.
+ * <p>
+ * Hashes are collected in a buffer which grows up to a fixed capacity. Whenever the buffer is full it is sorted and
+ * spilled as a run to a temporary file, the runs are memory-mapped and merged afterwards to find the duplicated hashes.
+ * Only these are kept on the heap, see {@link ClassNameHashes}.
+ * <p>
+ * The hashes are also appended to a log in the order they were added, which tells the arrays containing a duplicated
+ * hash once the runs are merged.
+ */
+final class ClassNameHashRuns implements Closeable {
+
+    /**
+     * Largest number of hashes in a single memory-mapped run.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / Long.BYTES;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path directory;
+
+    private final int capacity;
+
+    private long[] buffer;
+
+    private int size;
+
+    private final List<Path> runs = new ArrayList<>();
+
+    /** the file the hashes are appended to in the order they were added, {@code null} until the first is written */
+    private Path log;
+
+    private long logSize;
+
+    /** the number of hashes of each added array */
+    private int[] counts = new int[64];
+
+    private int added;
+
+    /**
+     * @param directory the directory for the runs and the log, created when hashes are first written
+     * @param capacity the number of hashes to keep in memory
+     */
+    ClassNameHashRuns(Path directory, int capacity) {
+        this.directory = directory;
+        this.capacity = Math.max(1, Math.min(capacity, MAX_CAPACITY));
+        this.buffer = new long[Math.min(this.capacity, INITIAL_CAPACITY)];
+    }
+
+    /**
+     * @param hashes the name hashes of an artifact, which are copied
+     * @throws IOException if a run can't be spilled
+     */
+    void add(long[] hashes) throws IOException {
+        if (added == counts.length) {
+            counts = Arrays.copyOf(counts, added * 2);
+        }
+        counts[added++] = hashes.length;
+        int offset = 0;
+        while (offset < hashes.length) {
+            if (size == buffer.length) {
+                if (buffer.length < capacity) {
+                    buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, buffer.length * 2L));
+                } else {
+                    spill();
+                }
+            }
+            int length = Math.min(buffer.length - size, hashes.length - offset);
+            System.arraycopy(hashes, offset, buffer, size, length);
+            size += length;
+            offset += length;
+        }
+    }
+
+    /**
+     * @return the number of runs spilled to disk so far
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * @return the sorted hashes which occur more than once
+     * @throws IOException if the runs can't be spilled or read
+     */
+    long[] duplicates() throws IOException {
+        if (runs.isEmpty()) {
+            if (size > 0) {
+                appendToLog();
+            }
+            Arrays.parallelSort(buffer, 0, size);
+            return Arrays.copyOf(buffer, ClassNameHashes.compactDuplicates(buffer, size));
+        }
+        if (size > 0) {
+            spill();
+        }
+
+        List<FileChannel> channels = new ArrayList<>(runs.size());
+        try {
+            PriorityQueue<LongBuffer> heads =
+                    new PriorityQueue<>(runs.size(), Comparator.comparingLong(run -> run.get(run.position())));
+            for (Path run : runs) {
+                FileChannel channel = FileChannel.open(run, StandardOpenOption.READ);
+                channels.add(channel);
+                LongBuffer hashes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                        .asLongBuffer();
+                if (hashes.hasRemaining()) {
+                    heads.add(hashes);
+                }
+            }
+
+            // merge the runs, reusing the buffer for the duplicates
+            long[] duplicates = buffer;
+            int count = 0;
+            boolean first = true;
+            long previous = 0;
+            while (!heads.isEmpty()) {
+                LongBuffer head = heads.poll();
+                long hash = head.get();
+                if (head.hasRemaining()) {
+                    heads.add(head);
+                }
+                if (!first && hash == previous && (count == 0 || duplicates[count - 1] != hash)) {
+                    if (count == duplicates.length) {
+                        duplicates = Arrays.copyOf(duplicates, count * 2);
+                    }
+                    duplicates[count++] = hash;
+                }
+                first = false;
+                previous = hash;
+            }
+            return Arrays.copyOf(duplicates, count);
+        } finally {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * @param duplicates the sorted hashes which occur more than once, see {@link #duplicates()}
+     * @return the indexes of the added arrays, in the order they were added, which contain one of the duplicates
+     * @throws IOException if the log can't be read
+     */
+    BitSet getArraysWith(long[] duplicates) throws IOException {
+        BitSet arrays = new BitSet(added);
+        if (duplicates.length == 0 || log == null) {
+            return arrays;
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            LongBuffer window = LongBuffer.allocate(0);
+            long position = 0;
+            for (int i = 0; i < added; i++) {
+                long end = position + counts[i];
+                while (position < end) {
+                    if (!window.hasRemaining()) {
+                        long length = Math.min(MAX_CAPACITY, logSize - position);
+                        window = channel.map(FileChannel.MapMode.READ_ONLY, position * Long.BYTES, length * Long.BYTES)
+                                .asLongBuffer();
+                    }
+                    position++;
+                    if (ClassNameHashes.isCandidate(duplicates, window.get())) {
+                        arrays.set(i);
+                        // the other hashes of this array don't matter
+                        if (end - position <= window.remaining()) {
+                            window.position(window.position() + (int) (end - position));
+                        } else {
+                            window = LongBuffer.allocate(0);
+                        }
+                        position = end;
+                    }
+                }
+            }
+        }
+        return arrays;
+    }
+
+    /**
+     * Append the buffered hashes to the log, before they are sorted.
+     */
+    private void appendToLog() throws IOException {
+        Files.createDirectories(directory);
+        if (log == null) {
+            log = Files.createTempFile(directory, "classes-", ".log");
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.map(FileChannel.MapMode.READ_WRITE, logSize * Long.BYTES, (long) size * Long.BYTES)
+                    .asLongBuffer()
+                    .put(buffer, 0, size);
+        }
+        logSize += size;
+    }
+
+    private void spill() throws IOException {
+        appendToLog();
+        Arrays.parallelSort(buffer, 0, size);
+        Path run = Files.createTempFile(directory, "classes-", ".run");
+        runs.add(run);
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) size * Long.BYTES)
+                    .asLongBuffer()
+                    .put(buffer, 0, size);
+        }
+        size = 0;
+    }
+
+    /**
+     * Delete the spilled runs and the log.
+     */
+    @Override
+    public void close() {
+        runs.forEach(ClassNameHashRuns::delete);
+        runs.clear();
+        if (log != null) {
+            delete(log);
+            log = null;
+        }
+        size = 0;
+        logSize = 0;
+        added = 0;
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // still mapped on some platforms
+            file.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * The name hashes of all class files on a classpath, each with a reference to its artifact and class file.
+ * <p>
+ * The hashes are sorted once all artifacts were added. Only the references of hashes which occur more than once are
+ * passed on, grouped by hash, so the names of all other class files never have to be decoded. A class file is referred to by the index
+ * of its artifact in the order they were added and its index within the artifact.
+ * <p>
+ * Large tables are sorted in parallel ranges, see {@link EntryRanges}.
+ */
+final class ClassNameHashTable {
+    private long[] hashes = new long[1024];
+
+    /** the artifact index in the upper and the class file index in the lower 32 bits */
+    private long[] references = new long[1024];
+
+    private int size;
+
+    /**
+     * Consumes the references to the class files with the same name hash.
+     *
+     * @param <E> the exception thrown by the consumer
+     */
+    @FunctionalInterface
+    interface DuplicateGroupConsumer<E extends Exception> {
+        /**
+         * @param references the references, see {@link #artifactIndex(long)} and {@link #classIndex(long)}
+         * @param from the index of the first reference of the group
+         * @param to the index after the last reference of the group
+         * @throws E if the group can't be consumed
+         */
+        void accept(long[] references, int from, int to) throws E;
+    }
+
+    private int artifactCount;
+
+    /** the number of class files from which on they are sorted in parallel ranges, {@code 0} for never */
+    private final int parallelThreshold;
+
+    ClassNameHashTable() {
+        this(0);
+    }
+
+    /**
+     * @param parallelThreshold the number of class files from which on they are sorted in parallel ranges, {@code 0}
+     *            to never sort them in parallel
+     */
+    ClassNameHashTable(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @param nameHashes the name hashes of the class files of the next artifact
+     * @return the index of the artifact
+     */
+    int add(long[] nameHashes) {
+        int artifactIndex = artifactCount++;
+        if (size + nameHashes.length > hashes.length) {
+            int capacity = Math.max(hashes.length * 2, size + nameHashes.length);
+            hashes = Arrays.copyOf(hashes, capacity);
+            references = Arrays.copyOf(references, capacity);
+        }
+        System.arraycopy(nameHashes, 0, hashes, size, nameHashes.length);
+        for (int i = 0; i < nameHashes.length; i++) {
+            references[size + i] = ((long) artifactIndex << 32) | i;
+        }
+        size += nameHashes.length;
+        return artifactIndex;
+    }
+
+    /**
+     * @return the number of class files added so far
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sort the hashes and drop them afterwards, the table can't be used any further.
+     * <p>
+     * All class files with the same name have the same name hash, so the class files of a name are complete once its
+     * group was consumed.
+     *
+     * @param consumer consumes the references of each name hash which occurs more than once, in ascending order so
+     *            they are in the order their artifacts were added
+     * @param <E> the exception thrown by the consumer
+     * @return the number of references in all groups
+     * @throws E if a group can't be consumed
+     */
+    <E extends Exception> int forEachDuplicateGroup(DuplicateGroupConsumer<E> consumer) throws E {
+        sort();
+        long[] sortedHashes = hashes;
+        long[] sortedReferences = references;
+        hashes = null;
+        references = null;
+        int count = 0;
+        int start = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i == size || sortedHashes[i] != sortedHashes[start]) {
+                if (i - start > 1) {
+                    consumer.accept(sortedReferences, start, i);
+                    count += i - start;
+                }
+                start = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param reference a reference as passed to {@link #forEachDuplicateGroup(DuplicateGroupConsumer)}
+     * @return the index of the artifact
+     */
+    static int artifactIndex(long reference) {
+        return (int) (reference >>> 32);
+    }
+
+    /**
+     * @param reference a reference as passed to {@link #forEachDuplicateGroup(DuplicateGroupConsumer)}
+     * @return the index of the class file within its artifact
+     */
+    static int classIndex(long reference) {
+        return (int) reference;
+    }
+
+    /**
+     * Sort the hashes together with their references by a least significant digit radix sort, a byte at a time.
+     * <p>
+     * Each range of entries counts its bytes separately, so every range knows where its entries go in each bucket.
+     * The ranges then count and move their entries concurrently, and the sort stays stable.
+     */
+    private void sort() {
+        int ranges = EntryRanges.count(size, parallelThreshold);
+        int rangeSize = EntryRanges.rangeSize(size, ranges);
+        long[] hashBuffer = new long[size];
+        long[] referenceBuffer = new long[size];
+        int[][] offsets = new int[ranges][256];
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            int byteShift = shift;
+            EntryRanges.forEachOf(size, ranges, (from, to) -> {
+                int[] counts = offsets[from / rangeSize];
+                Arrays.fill(counts, 0);
+                for (int i = from; i < to; i++) {
+                    counts[(int) (hashes[i] >>> byteShift) & 0xFF]++;
+                }
+            });
+            if (size == 0 || isSingleBucket(offsets, (int) (hashes[0] >>> shift) & 0xFF)) {
+                // all hashes have the same byte here
+                continue;
+            }
+            // turn the counts into the first target of each range in each bucket, bucket by bucket
+            int target = 0;
+            for (int bucket = 0; bucket < 256; bucket++) {
+                for (int[] counts : offsets) {
+                    int count = counts[bucket];
+                    counts[bucket] = target;
+                    target += count;
+                }
+            }
+            long[] sourceHashes = hashes;
+            long[] sourceReferences = references;
+            long[] targetHashes = hashBuffer;
+            long[] targetReferences = referenceBuffer;
+            EntryRanges.forEachOf(size, ranges, (from, to) -> {
+                int[] targets = offsets[from / rangeSize];
+                for (int i = from; i < to; i++) {
+                    int index = targets[(int) (sourceHashes[i] >>> byteShift) & 0xFF]++;
+                    targetHashes[index] = sourceHashes[i];
+                    targetReferences[index] = sourceReferences[i];
+                }
+            });
+            hashes = targetHashes;
+            hashBuffer = sourceHashes;
+            references = targetReferences;
+            referenceBuffer = sourceReferences;
+        }
+    }
+
+    private boolean isSingleBucket(int[][] counts, int bucket) {
+        int count = 0;
+        for (int[] rangeCounts : counts) {
+            count += rangeCounts[bucket];
+        }
+        return count == size;
+    }
+}
@@ -0,0 +1,95 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Finds class names which occur more than once on a classpath by sorting 64-bit hashes of the names.
+ * <p>
+ * Only a {@code long} per class is kept, instead of a map entry with a {@link ClassesWithSameName} and a
+ * {@link ClassFile}. Names whose hash occurs once can't be duplicates, so objects only have to be created for the
+ * remaining candidates. Hash collisions merely add candidates, they are resolved by comparing the names.
+ * {@link ClassNameHashTable} additionally keeps a reference to each class file, so the candidates are found without
+ * hashing or decoding the names again.
+ */
+final class ClassNameHashes {
+    private ClassNameHashes() {}
+
+    /**
+     * @param name the path of a class file
+     * @return a 64-bit hash of the UTF-8 encoded path, the same as {@link #hash(ByteBuffer, int, int)} of its bytes
+     */
+    static long hash(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return hash(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Hash a name without decoding it, e.g. at its offset in the central directory of a jar.
+     *
+     * @param buffer the buffer holding the UTF-8 encoded name
+     * @param offset the absolute position of the name in the buffer
+     * @param length the number of bytes of the name
+     * @return a 64-bit hash of the name
+     */
+    static long hash(ByteBuffer buffer, int offset, int length) {
+        // FNV-1a, followed by the finalizer of MurmurHash3 to spread the bits
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= buffer.get(i) & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Move the values which occur more than once to the front of a sorted array, each of them once.
+     *
+     * @param sorted the sorted values
+     * @param length the number of values to look at
+     * @return the number of duplicated values
+     */
+    static int compactDuplicates(long[] sorted, int length) {
+        int count = 0;
+        for (int i = 1; i < length; i++) {
+            if (sorted[i] == sorted[i - 1] && (count == 0 || sorted[count - 1] != sorted[i])) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param duplicates the sorted name hashes which occur more than once, see {@link ClassNameHashRuns#duplicates()}
+     * @param hash a name hash
+     * @return {@code true} if the name may occur more than once
+     */
+    static boolean isCandidate(long[] duplicates, long hash) {
+        return Arrays.binarySearch(duplicates, hash) >= 0;
+    }
+}
@@ -0,0 +1,383 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Matches class file paths against many wildcards at once.
+ * <p>
+ * All wildcards are compiled into a single trie, where {@code ?} is an edge for any character and {@code *} leads
+ * to a node looping on any character. A path is matched by walking the trie with the set of active nodes, so the
+ * cost depends on the length of the path and the number of wildcards sharing its prefix, not on the total number of
+ * wildcards. Matching stops as soon as no node is active, or as soon as a wildcard ending with {@code *} matched the
+ * prefix of the path. The length of such a prefix is returned by {@link #matchedPrefixLength(CharSequence, BitSet)},
+ * so the following paths in the same package can be matched by comparing the prefix alone.
+ * <p>
+ * A wildcard matches a path either completely or without its {@code .class} suffix, like the regular expression
+ * created by {@link AbstractResolveDependencies#asRegex(String)}. Every wildcard has an owner, so a single matcher
+ * can serve several ignorable dependencies of which only some apply to an artifact. Instances are thread-safe.
+ */
+final class ClassNameMatcher {
+    private static final String CLASS_SUFFIX = ".class";
+
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final char[] NO_CHARS = new char[0];
+
+    /** returned by {@link #matchedPrefixLength(CharSequence, BitSet)} if no wildcard matches the path */
+    static final int NO_MATCH = -1;
+
+    /** returned by {@link #matchedPrefixLength(CharSequence, BitSet)} if only the path itself is known to match */
+    static final int PATH_MATCH = Integer.MAX_VALUE;
+
+    private static final class Node {
+        private final int id;
+
+        /** {@code true} if reached by {@code *}, i.e. the node consumes any character */
+        private final boolean loop;
+
+        /** sorted characters of the literal edges */
+        private char[] chars = NO_CHARS;
+
+        private Node[] children = NO_NODES;
+
+        /** the node reached by {@code ?} */
+        private Node any;
+
+        /** the node reached by {@code *} */
+        private Node star;
+
+        /** the owners of the wildcards ending here, {@code null} if none */
+        private BitSet owners;
+
+        private Node(int id, boolean loop) {
+            this.id = id;
+            this.loop = loop;
+        }
+
+        private Node literal(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+
+    /**
+     * The active nodes while matching a single path, reused by each thread.
+     */
+    private static final class State {
+        private int[] current;
+
+        private int[] next;
+
+        private final int[] marks;
+
+        private int generation;
+
+        private State(int nodeCount) {
+            current = new int[nodeCount];
+            next = new int[nodeCount];
+            marks = new int[nodeCount];
+        }
+    }
+
+    /**
+     * Collects wildcards and compiles them into a {@link ClassNameMatcher}.
+     */
+    static final class Builder {
+        private final List<Node> nodes = new ArrayList<>();
+
+        private final Node root = newNode(false);
+
+        /**
+         * @param wildcard the wildcard, using {@code /} as package separator
+         * @param owner the owner of the wildcard
+         * @return this builder
+         */
+        Builder add(String wildcard, int owner) {
+            Node node = root;
+            for (int i = 0; i < wildcard.length(); i++) {
+                char c = wildcard.charAt(i);
+                if (c == '*') {
+                    if (!node.loop) {
+                        if (node.star == null) {
+                            node.star = newNode(true);
+                        }
+                        node = node.star;
+                    }
+                } else if (c == '?') {
+                    if (node.any == null) {
+                        node.any = newNode(false);
+                    }
+                    node = node.any;
+                } else {
+                    Node child = node.literal(c);
+                    if (child == null) {
+                        child = newNode(false);
+                        int index = -Arrays.binarySearch(node.chars, c) - 1;
+                        node.chars = insert(node.chars, index, c);
+                        node.children = insert(node.children, index, child);
+                    }
+                    node = child;
+                }
+            }
+            if (node.owners == null) {
+                node.owners = new BitSet();
+            }
+            node.owners.set(owner);
+            return this;
+        }
+
+        ClassNameMatcher build() {
+            return new ClassNameMatcher(nodes.toArray(NO_NODES), root);
+        }
+
+        private Node newNode(boolean loop) {
+            Node node = new Node(nodes.size(), loop);
+            nodes.add(node);
+            return node;
+        }
+
+        private static char[] insert(char[] array, int index, char value) {
+            char[] result = new char[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+
+        private static Node[] insert(Node[] array, int index, Node value) {
+            Node[] result = new Node[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+    }
+
+    private final Node[] nodes;
+
+    private final Node root;
+
+    private final boolean empty;
+
+    /** the owners with a wildcard matching every class file path */
+    private final BitSet everythingOwners;
+
+    private final ThreadLocal<State> states;
+
+    private ClassNameMatcher(Node[] nodes, Node root) {
+        this.nodes = nodes;
+        this.root = root;
+        boolean hasOwners = false;
+        for (Node node : nodes) {
+            hasOwners |= node.owners != null;
+        }
+        this.empty = !hasOwners;
+        this.everythingOwners = root.star == null ? new BitSet() : ownersMatchingEverything(root.star);
+        this.states = ThreadLocal.withInitial(() -> new State(nodes.length));
+    }
+
+    /**
+     * A wildcard starting with {@code *} matches every class file path if it accepts a suffix of {@code .class}
+     * right after the {@code *}, e.g. {@code *}, {@code **}, {@code *.class} or {@code *s}: whatever precedes that
+     * suffix is consumed by the {@code *}.
+     *
+     * @param star the node reached by the leading {@code *}
+     * @return the owners of such wildcards
+     */
+    private static BitSet ownersMatchingEverything(Node star) {
+        BitSet result = new BitSet();
+        for (int start = 0; start <= CLASS_SUFFIX.length(); start++) {
+            List<Node> active = new ArrayList<>();
+            closure(active, star);
+            for (int i = start; i < CLASS_SUFFIX.length() && !active.isEmpty(); i++) {
+                char c = CLASS_SUFFIX.charAt(i);
+                List<Node> next = new ArrayList<>();
+                for (Node node : active) {
+                    if (node.loop) {
+                        closure(next, node);
+                    }
+                    closure(next, node.any);
+                    closure(next, node.literal(c));
+                }
+                active = next;
+            }
+            for (Node node : active) {
+                if (node.owners != null) {
+                    result.or(node.owners);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void closure(List<Node> active, Node node) {
+        while (node != null && !active.contains(node)) {
+            active.add(node);
+            node = node.star;
+        }
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return {@code true} if the matcher has no wildcards
+     */
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @param owners the owners whose wildcards should be considered, {@code null} for all
+     * @return {@code true} if a wildcard of one of the owners matches every class file path, e.g. {@code *},
+     *         {@code **} or {@code *.class}
+     */
+    boolean matchesEverything(BitSet owners) {
+        return owners == null ? !everythingOwners.isEmpty() : everythingOwners.intersects(owners);
+    }
+
+    private static boolean owns(Node node, BitSet owners) {
+        return node.owners != null && (owners == null || node.owners.intersects(owners));
+    }
+
+    /**
+     * @param path the path of a class file, e.g. {@code org/apache/maven/Stuff.class}
+     * @return {@code true} if any wildcard matches the path
+     */
+    boolean matches(CharSequence path) {
+        return matches(path, null);
+    }
+
+    /**
+     * @param path the path of a class file, e.g. {@code org/apache/maven/Stuff.class}
+     * @param owners the owners whose wildcards should be considered, {@code null} for all
+     * @return {@code true} if a wildcard of one of the owners matches the path
+     */
+    boolean matches(CharSequence path, BitSet owners) {
+        return matchedPrefixLength(path, owners) != NO_MATCH;
+    }
+
+    /**
+     * @param path the path of a class file, e.g. {@code org/apache/maven/Stuff.class}
+     * @param owners the owners whose wildcards should be considered, {@code null} for all
+     * @return the length of a prefix of the path which every path starting with it matches, e.g. the length of
+     *         {@code org/shaded/} for {@code org/shaded/*}. {@link #PATH_MATCH} if only the path itself is known to
+     *         match and {@link #NO_MATCH} if no wildcard of the owners matches
+     */
+    int matchedPrefixLength(CharSequence path, BitSet owners) {
+        if (empty) {
+            return NO_MATCH;
+        }
+        State state = states.get();
+        if (state.generation > Integer.MAX_VALUE - path.length() - 2) {
+            Arrays.fill(state.marks, 0);
+            state.generation = 0;
+        }
+        int suffixStart = endsWithClassSuffix(path) ? path.length() - CLASS_SUFFIX.length() : -1;
+        state.generation++;
+        int size = activate(state, state.current, 0, root);
+        if (acceptsAnySuffix(state.current, size, owners)) {
+            return 0;
+        }
+        for (int i = 0; i < path.length(); i++) {
+            if (i == suffixStart && accepts(state.current, size, owners)) {
+                return PATH_MATCH;
+            }
+            char c = path.charAt(i);
+            state.generation++;
+            int nextSize = 0;
+            for (int n = 0; n < size; n++) {
+                Node node = nodes[state.current[n]];
+                if (node.loop) {
+                    nextSize = activate(state, state.next, nextSize, node);
+                }
+                if (node.any != null) {
+                    nextSize = activate(state, state.next, nextSize, node.any);
+                }
+                Node child = node.literal(c);
+                if (child != null) {
+                    nextSize = activate(state, state.next, nextSize, child);
+                }
+            }
+            if (nextSize == 0) {
+                return NO_MATCH;
+            }
+            if (acceptsAnySuffix(state.next, nextSize, owners)) {
+                // a wildcard like org/shaded/* matched the prefix
+                return i + 1;
+            }
+            int[] swap = state.current;
+            state.current = state.next;
+            state.next = swap;
+            size = nextSize;
+        }
+        return accepts(state.current, size, owners) ? PATH_MATCH : NO_MATCH;
+    }
+
+    /**
+     * Add a node and, as {@code *} also matches nothing, the node reached by {@code *} to the active nodes.
+     */
+    private static int activate(State state, int[] active, int size, Node node) {
+        while (node != null && state.marks[node.id] != state.generation) {
+            state.marks[node.id] = state.generation;
+            active[size++] = node.id;
+            node = node.star;
+        }
+        return size;
+    }
+
+    private boolean acceptsAnySuffix(int[] active, int size, BitSet owners) {
+        for (int n = 0; n < size; n++) {
+            Node node = nodes[active[n]];
+            if (node.loop && owns(node, owners)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean accepts(int[] active, int size, BitSet owners) {
+        for (int n = 0; n < size; n++) {
+            if (owns(nodes[active[n]], owners)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean endsWithClassSuffix(CharSequence path) {
+        int offset = path.length() - CLASS_SUFFIX.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < CLASS_SUFFIX.length(); i++) {
+            if (path.charAt(offset + i) != CLASS_SUFFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,284 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * The highest class file version of a jar, separately for the base entries and for each
+ * {@code META-INF/versions/N} tree of a Multi-Release JAR.
+ * <p>
+ * The inventory doesn't depend on a version limit or on ignored classes, so it can be shared by all rules and modules
+ * of a build and kept in the {@link JarContentsStore}. If no tree exceeds a limit, the jar passes whatever classes are
+ * ignored. Otherwise, the per-entry versions of {@link JarContents} have to be checked.
+ * <p>
+ * Only the trees which were requested are read, see {@link JarContents#getVersionInventory(IntPredicate)}. The other
+ * trees are listed without versions, so they are known to exist.
+ */
+public final class ClassVersionInventory {
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    /**
+     * The highest class file version of the base entries or of a single {@code META-INF/versions/N} tree.
+     */
+    public static final class Tree {
+        private final int release;
+
+        private final int maxMajor;
+
+        private final int maxMinor;
+
+        private final int maxEntryIndex;
+
+        private final boolean read;
+
+        private final boolean unknownVersions;
+
+        Tree(int release, int maxMajor, int maxMinor, int maxEntryIndex, boolean read, boolean unknownVersions) {
+            this.release = release;
+            this.maxMajor = maxMajor;
+            this.maxMinor = maxMinor;
+            this.maxEntryIndex = maxEntryIndex;
+            this.read = read;
+            this.unknownVersions = unknownVersions;
+        }
+
+        /**
+         * @return {@code N} of the {@code META-INF/versions/N} tree or {@code 0} for the base entries
+         */
+        public int getRelease() {
+            return release;
+        }
+
+        /**
+         * @return {@code true} if the versions of all class entries of the tree were read
+         */
+        public boolean isRead() {
+            return read;
+        }
+
+        /**
+         * @return {@code true} if the version of some class entries of the tree couldn't be read
+         */
+        public boolean hasUnknownVersions() {
+            return unknownVersions;
+        }
+
+        /**
+         * @return the highest major class file version of the tree, {@code -1} if none was read
+         */
+        public int getMaxMajor() {
+            return maxMajor;
+        }
+
+        /**
+         * @return the highest minor class file version among the classes with the highest major version
+         */
+        public int getMaxMinor() {
+            return maxMinor;
+        }
+
+        /**
+         * @return the index of the first class entry with the highest version, as in
+         *         {@link JarContents#getClassEntryNames()}, {@code -1} if none was read
+         */
+        public int getMaxEntryIndex() {
+            return maxEntryIndex;
+        }
+
+        /**
+         * @param major the major class file version
+         * @param minor the minor class file version
+         * @return {@code true} if a class of this tree has a higher version
+         */
+        public boolean exceeds(int major, int minor) {
+            return maxMajor > major || (maxMajor == major && maxMinor > minor);
+        }
+    }
+
+    private final List<Tree> trees;
+
+    private ClassVersionInventory(List<Tree> trees) {
+        this.trees = Collections.unmodifiableList(trees);
+    }
+
+    /**
+     * @return the trees which contain classes, ordered by release with the base entries first
+     */
+    public List<Tree> getTrees() {
+        return trees;
+    }
+
+    /**
+     * @return {@code true} if the version of some class entries couldn't be read
+     */
+    public boolean hasUnknownVersions() {
+        for (Tree tree : trees) {
+            if (tree.unknownVersions) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param releases the releases of the trees, {@code 0} for the base entries
+     * @return {@code true} if all of these trees were read
+     */
+    public boolean isRead(IntPredicate releases) {
+        for (Tree tree : trees) {
+            if (!tree.read && releases.test(tree.release)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param major the major class file version
+     * @param minor the minor class file version
+     * @return {@code true} if all trees were read, all versions are known and no class in any tree has a higher
+     *         version
+     */
+    public boolean isWithin(int major, int minor) {
+        return isWithin(major, minor, release -> true);
+    }
+
+    /**
+     * @param major the major class file version
+     * @param minor the minor class file version
+     * @param releases the releases of the trees to compare, {@code 0} for the base entries
+     * @return {@code true} if these trees were read, all their versions are known and no class in them has a higher
+     *         version
+     */
+    public boolean isWithin(int major, int minor, IntPredicate releases) {
+        for (Tree tree : trees) {
+            if (releases.test(tree.release) && (!tree.read || tree.unknownVersions || tree.exceeds(major, minor))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parsed without a regular expression and without copying the name, so it suits names which aren't decoded.
+     *
+     * @param entryName the name of a class entry
+     * @return {@code N} if the entry is part of the {@code META-INF/versions/N} tree, {@code 0} otherwise
+     */
+    static int releaseOf(CharSequence entryName) {
+        int length = entryName.length();
+        int start = VERSIONS_PREFIX.length();
+        if (length <= start + 1) {
+            return 0;
+        }
+        for (int i = 0; i < start; i++) {
+            if (entryName.charAt(i) != VERSIONS_PREFIX.charAt(i)) {
+                return 0;
+            }
+        }
+        long release = 0;
+        int end = start;
+        while (end < length && entryName.charAt(end) >= '0' && entryName.charAt(end) <= '9') {
+            release = release * 10 + (entryName.charAt(end) - '0');
+            if (release > Integer.MAX_VALUE) {
+                // not a release, check it like a base entry
+                return 0;
+            }
+            end++;
+        }
+        return end > start && end < length && entryName.charAt(end) == '/' ? (int) release : 0;
+    }
+
+    /**
+     * @param releases the {@link #releaseOf(CharSequence) release} of each class entry
+     * @param majorVersions the major versions of the class entries, {@link JarContents#NOT_READ} if not read
+     * @param minorVersions the minor versions of the class entries
+     * @return the inventory of the class entries, a tree is only read if all its entries are
+     */
+    static ClassVersionInventory of(int[] releases, int[] majorVersions, int[] minorVersions) {
+        // max major, max minor, index, unread entries, unknown entries
+        Map<Integer, int[]> maxima = new TreeMap<>();
+        for (int index = 0; index < majorVersions.length; index++) {
+            int major = majorVersions[index];
+            int minor = minorVersions[index];
+            int[] max = maxima.computeIfAbsent(releases[index], r -> new int[] {-1, -1, -1, 0, 0});
+            if (major == JarContents.NOT_READ) {
+                max[3]++;
+            } else if (major == JarContents.UNKNOWN_VERSION) {
+                max[4]++;
+            } else if (major > max[0] || (major == max[0] && minor > max[1])) {
+                max[0] = major;
+                max[1] = minor;
+                max[2] = index;
+            }
+        }
+        List<Tree> trees = new ArrayList<>(maxima.size());
+        for (Map.Entry<Integer, int[]> entry : maxima.entrySet()) {
+            int[] max = entry.getValue();
+            trees.add(new Tree(entry.getKey(), max[0], max[1], max[2], max[3] == 0, max[4] > 0));
+        }
+        return new ClassVersionInventory(trees);
+    }
+
+    /**
+     * Serialize the inventory, see {@link #restore(ByteBuffer)} for the format.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeShort(trees.size());
+        for (Tree tree : trees) {
+            out.writeInt(tree.release);
+            out.writeShort(tree.maxMajor);
+            out.writeShort(tree.maxMinor);
+            out.writeInt(tree.maxEntryIndex);
+            out.writeByte((tree.read ? 1 : 0) | (tree.unknownVersions ? 2 : 0));
+        }
+    }
+
+    /**
+     * Restore an inventory written by {@link #writeTo(DataOutput)}.
+     * <pre>
+     * unsigned short count
+     * count times: int release, short major, short minor, int index of the entry with the highest version,
+     *              byte flags, 1 if read, 2 if some versions are unknown
+     * </pre>
+     */
+    static ClassVersionInventory restore(ByteBuffer buffer) {
+        int count = buffer.getShort() & 0xFFFF;
+        List<Tree> trees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int release = buffer.getInt();
+            short major = buffer.getShort();
+            short minor = buffer.getShort();
+            int index = buffer.getInt();
+            byte flags = buffer.get();
+            trees.add(new Tree(release, major, minor, index, (flags & 1) != 0, (flags & 2) != 0));
+        }
+        return new ClassVersionInventory(trees);
+    }
+}
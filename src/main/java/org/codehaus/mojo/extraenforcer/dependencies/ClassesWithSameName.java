@@ -19,6 +19,7 @@ package org.codehaus.mojo.extraenforcer.dependencies;
  * under the License.
  */
 
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -51,6 +52,12 @@ public class ClassesWithSameName {
 
     private final List<ClassFile> list = new ArrayList<>();
 
+    /** number of class files in the list whose content has been compared to the first one */
+    private int compared = 1;
+
+    /** {@code true} once a class file with content different from the first one has been found */
+    private boolean differentContentFound;
+
     /**
      * @param log (required) the logger
      * @param initialClassFile (required) we require at least one class file. Splitting this param from the
@@ -111,10 +118,14 @@ public class ClassesWithSameName {
     /**
      * Main logic to determine if this object represents more than one of the exact same class
      * on the classpath.
+     * <p>
+     * The content of the class files is only compared when {@code ignoreWhenIdentical} is set, and every class file
+     * is compared at most once, no matter how often this method is invoked.
      * @param ignoreWhenIdentical True if we should ignore two or more classes when they have the
      *                            exact same bytecode; false means fail whenever there's more than
      *                            one of the same class, regardless of bytecode.
      * @return true if there are duplicates, false if not.
+     * @throws UncheckedIOException if the content of a class file can't be read
      */
     public boolean hasDuplicates(boolean ignoreWhenIdentical) {
         boolean compareJustClassNames = !ignoreWhenIdentical;
@@ -122,21 +133,21 @@ public class ClassesWithSameName {
             return list.size() > 1;
         }
 
-        if (list.size() <= 1) {
-            return false;
+        if (list.size() <= 1 || differentContentFound) {
+            return differentContentFound;
         }
 
-        String previousHash = list.get(0).getHash();
-        for (int i = 1; i < list.size(); i++) {
-            String currentHash = list.get(i).getHash();
-            if (!previousHash.equals(currentHash)) {
-                return true;
-            }
+        ClassFile first = list.get(0);
+        while (compared < list.size() && !differentContentFound) {
+            differentContentFound = !first.hasSameContentAs(list.get(compared));
+            compared++;
         }
 
-        log.debug("ignoring duplicates of class " + classFilePath + " since the bytecode matches exactly");
+        if (!differentContentFound) {
+            log.debug("ignoring duplicates of class " + classFilePath + " since the bytecode matches exactly");
+        }
 
-        return false;
+        return differentContentFound;
     }
 
     /**
@@ -150,18 +161,14 @@ public class ClassesWithSameName {
      *
      *         Example (ignoreWhenIdentical = true):
      *         org/apache/maven/Stuff.class  -- the bytecode exactly matches in these: a.jar and b.jar
+     * @throws UncheckedIOException if the content of a class file can't be read
      */
     public String toOutputString(boolean ignoreWhenIdentical) {
         String result = classFilePath;
 
         if (list.size() >= 2 && ignoreWhenIdentical) {
             StringBuilder duplicationInfo = new StringBuilder();
-            for (Set<Artifact> groupedArtifacts :
-                    groupArtifactsWhoseClassesAreExactMatch().values()) {
-                if (groupedArtifacts.size() <= 1) {
-                    continue;
-                }
-
+            for (Set<Artifact> groupedArtifacts : getArtifactsWithIdenticalClasses()) {
                 if (duplicationInfo.length() == 0) {
                     duplicationInfo.append("  -- the bytecode exactly matches in these: ");
                 } else {
@@ -177,6 +184,23 @@ public class ClassesWithSameName {
         return result;
     }
 
+    /**
+     * @return the groups of at least two artifacts in which the bytecode of this class exactly matches
+     * @throws UncheckedIOException if the content of a class file can't be read
+     */
+    List<Set<Artifact>> getArtifactsWithIdenticalClasses() {
+        List<Set<Artifact>> result = new ArrayList<>();
+        if (list.size() >= 2) {
+            for (Set<Artifact> groupedArtifacts :
+                    groupArtifactsWhoseClassesAreExactMatch().values()) {
+                if (groupedArtifacts.size() > 1) {
+                    result.add(groupedArtifacts);
+                }
+            }
+        }
+        return result;
+    }
+
     private static void throwIfClassNameDoesNotMatch(ClassFile classFile, String otherClassFilePath) {
         if (!classFile.getClassFilePath().equals(otherClassFilePath)) {
             throw new IllegalArgumentException(
@@ -200,17 +224,43 @@ public class ClassesWithSameName {
         return result.toString();
     }
 
-    private Map<String, Set<Artifact>> groupArtifactsWhoseClassesAreExactMatch() {
-        Map<String, Set<Artifact>> groupedArtifacts = new LinkedHashMap<>();
+    /**
+     * @return {@code true} if the class file is known to differ from all others without reading any of them
+     */
+    private boolean isKnownToBeUnique(ClassFile classFile) {
+        for (ClassFile other : list) {
+            if (other != classFile && !classFile.isKnownToDifferFrom(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<Object, Set<Artifact>> groupArtifactsWhoseClassesAreExactMatch() {
+        Map<Object, Set<Artifact>> groupedArtifacts = new LinkedHashMap<>();
 
+        List<Object> keys = new ArrayList<>(list.size());
         for (ClassFile classFile : list) {
-            Set<Artifact> artifacts = groupedArtifacts.get(classFile.getHash());
+            // a class file of a jar with the same content as an earlier one joins its group without being digested
+            Object key = null;
+            for (int i = 0; i < keys.size() && key == null; i++) {
+                ClassFile earlier = list.get(i);
+                if (!classFile.isKnownToDifferFrom(earlier) && classFile.isFoundInSameJarContentAs(earlier)) {
+                    key = keys.get(i);
+                }
+            }
+            if (key == null) {
+                // a class file known to be unique is a group of its own, which isn't part of the output
+                key = isKnownToBeUnique(classFile) ? new Object() : classFile.getDigest();
+            }
+            keys.add(key);
+            Set<Artifact> artifacts = groupedArtifacts.get(key);
             if (artifacts == null) {
                 artifacts = new LinkedHashSet<>();
             }
             artifacts.add(classFile.getArtifactThisClassWasFoundIn());
 
-            groupedArtifacts.put(classFile.getHash(), artifacts);
+            groupedArtifacts.put(key, artifacts);
         }
 
         return groupedArtifacts;
@@ -0,0 +1,96 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * The binary digest of the content of a class file, as computed by a {@link ContentHashAlgorithm}.
+ * <p>
+ * Digests are kept as a fixed size {@code byte[]} and are only converted to a hex string for output.
+ */
+final class ContentDigest {
+    private final byte[] bytes;
+
+    private final int hashCode;
+
+    private ContentDigest(byte[] bytes) {
+        this.bytes = bytes;
+        this.hashCode = Arrays.hashCode(bytes);
+    }
+
+    /**
+     * @param bytes the digest, which is not copied
+     * @return a digest of these bytes
+     */
+    static ContentDigest of(byte[] bytes) {
+        return new ContentDigest(bytes);
+    }
+
+    /**
+     * A SHA-256 hex hash equals the binary SHA-256 digest of the same content.
+     *
+     * @param hex a hash given as a hex string of either case, e.g. by a {@link ContentHashSupplier}
+     * @return a digest of the decoded bytes
+     * @throws IllegalArgumentException if the string isn't a non-empty hex string of even length
+     */
+    static ContentDigest ofHex(String hex) {
+        if (hex.isEmpty() || hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Not a hex hash: " + hex);
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Not a hex hash: " + hex);
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return new ContentDigest(bytes);
+    }
+
+    /**
+     * @return the digest, which must not be modified
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ContentDigest && Arrays.equals(bytes, ((ContentDigest) obj).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * @return the lower case hex form of the digest
+     */
+    @Override
+    public String toString() {
+        return Hex.encodeHexString(bytes);
+    }
+}
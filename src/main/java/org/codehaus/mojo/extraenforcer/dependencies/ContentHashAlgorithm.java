@@ -0,0 +1,238 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * The functions to decide whether two class files have the same content.
+ * <p>
+ * Content is digested straight from a {@link ByteBuffer}, e.g. a view of a memory mapped file. The message digests
+ * and scratch buffers are taken from pools shared by all threads, so apart from the resulting digest nothing is
+ * allocated per class. A larger buffer needed for a single content isn't kept.
+ */
+public enum ContentHashAlgorithm {
+    /**
+     * The cryptographic SHA-256 digest, the default.
+     */
+    SHA_256(32) {
+        @Override
+        void digest(ByteBuffer content, byte[] target) {
+            MessageDigest digest = SHA_256_DIGESTS.acquire();
+            try {
+                digest.update(content);
+                digest.digest(target, 0, target.length);
+            } catch (DigestException e) {
+                digest.reset();
+                throw new IllegalStateException(e);
+            } finally {
+                SHA_256_DIGESTS.release(digest);
+            }
+        }
+    },
+
+    /**
+     * The non-cryptographic 128-bit MurmurHash3 (x64 variant, seed 0), which is considerably faster to compute.
+     * Unlike with SHA-256, different classes with the same hash can be constructed on purpose.
+     */
+    MURMUR3_128(16) {
+        @Override
+        void digest(ByteBuffer content, byte[] target) {
+            murmur3(content, target);
+        }
+    };
+
+    /** the SHA-256 message digests not in use */
+    private static final ResourcePool<MessageDigest> SHA_256_DIGESTS = new ResourcePool<>(
+            Runtime.getRuntime().availableProcessors() * 4, DigestUtils::getSha256Digest, digest -> {});
+
+    private static final int SCRATCH_SIZE = 8192;
+
+    /** the buffers not in use for content which has to be read first */
+    private static final ResourcePool<ByteBuffer> SCRATCH_BUFFERS = new ResourcePool<>(
+            Runtime.getRuntime().availableProcessors() * 4, () -> ByteBuffer.allocate(SCRATCH_SIZE), buffer -> {});
+
+    /** files larger than this are memory mapped instead of read into the scratch buffer */
+    private static final int MAX_READ_SIZE = 64 * 1024;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final int length;
+
+    ContentHashAlgorithm(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return the length of a digest in bytes
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Digest the remaining content of a buffer, without allocating anything in the steady state.
+     *
+     * @param content the content, which is consumed
+     * @param target the array of {@link #getLength()} bytes to store the digest in
+     */
+    abstract void digest(ByteBuffer content, byte[] target);
+
+    /**
+     * @param content the content, which is consumed
+     * @return the digest of the content
+     */
+    ContentDigest digest(ByteBuffer content) {
+        byte[] target = new byte[length];
+        digest(content, target);
+        return ContentDigest.of(target);
+    }
+
+    /**
+     * @param inputStreamSupplier a supplier for the content
+     * @return the digest of the content
+     * @throws IOException if the content can't be read
+     */
+    ContentDigest digest(InputStreamSupplier inputStreamSupplier) throws IOException {
+        ByteBuffer scratch = SCRATCH_BUFFERS.acquire();
+        try (InputStream inputStream = inputStreamSupplier.get()) {
+            ByteBuffer buffer = scratch;
+            buffer.clear();
+            int read;
+            while ((read = inputStream.read(buffer.array(), buffer.position(), buffer.capacity() - buffer.position()))
+                    >= 0) {
+                buffer.position(buffer.position() + read);
+                if (!buffer.hasRemaining()) {
+                    buffer = grow(buffer);
+                }
+            }
+            buffer.flip();
+            return digest(buffer);
+        } finally {
+            // a grown buffer is dropped, only the pooled one is given back
+            SCRATCH_BUFFERS.release(scratch);
+        }
+    }
+
+    /**
+     * Small files are read into a pooled buffer, larger ones are memory mapped.
+     *
+     * @param file the file with the content
+     * @return the digest of the content
+     * @throws IOException if the file can't be read
+     */
+    ContentDigest digest(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_READ_SIZE) {
+                return digest(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            ByteBuffer scratch = SCRATCH_BUFFERS.acquire();
+            try {
+                ByteBuffer buffer = size <= scratch.capacity() ? scratch : ByteBuffer.allocate((int) size);
+                buffer.clear();
+                buffer.limit((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // until the whole file has been read
+                }
+                buffer.flip();
+                return digest(buffer);
+            } finally {
+                SCRATCH_BUFFERS.release(scratch);
+            }
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * MurmurHash3 x64 128, the result equals {@code MurmurHash3.hash128x64} of commons-codec, stored big endian.
+     */
+    private static void murmur3(ByteBuffer content, byte[] target) {
+        content.order(ByteOrder.LITTLE_ENDIAN);
+        int size = content.remaining();
+        long h1 = 0;
+        long h2 = 0;
+        for (int blocks = size / 16; blocks > 0; blocks--) {
+            long k1 = content.getLong();
+            long k2 = content.getLong();
+            h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+            h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+            h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+            h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = content.remaining();
+        for (int i = tail - 1; i >= 8; i--) {
+            k2 ^= (content.get(content.position() + i) & 0xFFL) << ((i - 8) * 8);
+        }
+        for (int i = Math.min(tail, 8) - 1; i >= 0; i--) {
+            k1 ^= (content.get(content.position() + i) & 0xFFL) << (i * 8);
+        }
+        content.position(content.limit());
+        if (tail > 8) {
+            h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+        }
+        if (tail > 0) {
+            h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+        }
+
+        h1 ^= size;
+        h2 ^= size;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        for (int i = 0; i < 8; i++) {
+            target[i] = (byte) (h1 >>> (56 - 8 * i));
+            target[i + 8] = (byte) (h2 >>> (56 - 8 * i));
+        }
+    }
+
+    private static long fmix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
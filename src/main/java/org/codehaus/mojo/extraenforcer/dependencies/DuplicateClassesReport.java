@@ -0,0 +1,223 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Collects the duplicate classes found by {@link BanDuplicateClasses} for its failure message.
+ * <p>
+ * Each duplicate class may be streamed to a file in the JSON lines format as soon as it was found, one object per
+ * class with its name, the artifacts it was found in and the groups of artifacts in which its bytecode exactly
+ * matches. The message either lists every group of artifacts with all of their classes, or only the first groups
+ * found with at most {@value #MAX_LISTED_CLASSES} classes each, so neither the build log nor the memory needed grow
+ * with the number of duplicate classes. Of the other groups only the number of classes is kept.
+ */
+final class DuplicateClassesReport implements Closeable {
+    /** the maximum number of classes listed for a group of artifacts if the groups are limited */
+    static final int MAX_LISTED_CLASSES = 100;
+
+    private final String message;
+
+    private final int maxGroups;
+
+    private final Path file;
+
+    /** opened once the first class is written */
+    private Writer writer;
+
+    /** the number of classes found in each group of artifacts, in the order the groups were found */
+    private final Map<Set<Artifact>, int[]> countsByArtifacts = new LinkedHashMap<>();
+
+    /** the descriptions of the listed classes of each listed group of artifacts */
+    private final Map<Set<Artifact>, List<String>> listedByArtifacts = new LinkedHashMap<>();
+
+    private int count;
+
+    /**
+     * @param message the first line of the message, {@code null} for the default
+     * @param maxGroups the maximum number of artifact groups in the message, {@code 0} or less lists all groups with
+     *        all of their classes
+     * @param file the file to stream every duplicate class to, {@code null} for none. It is only created once a
+     *        duplicate class was found
+     */
+    DuplicateClassesReport(String message, int maxGroups, Path file) {
+        this.message = message;
+        this.maxGroups = maxGroups;
+        this.file = file;
+    }
+
+    /**
+     * @param className the path of the duplicate class file
+     * @param artifacts the artifacts the class was found in
+     * @param identicalIn the groups of artifacts in which the bytecode of the class exactly matches
+     * @param description the description of the class in the message, only invoked if the class is listed
+     * @throws IOException if the class can't be written to the file
+     */
+    void add(
+            String className,
+            Set<Artifact> artifacts,
+            Collection<Set<Artifact>> identicalIn,
+            Supplier<String> description)
+            throws IOException {
+        count++;
+        countsByArtifacts.computeIfAbsent(artifacts, k -> new int[1])[0]++;
+        List<String> listed = listedByArtifacts.get(artifacts);
+        if (listed == null && (maxGroups <= 0 || listedByArtifacts.size() < maxGroups)) {
+            listed = new ArrayList<>();
+            listedByArtifacts.put(artifacts, listed);
+        }
+        if (listed != null && (maxGroups <= 0 || listed.size() < MAX_LISTED_CLASSES)) {
+            listed.add(description.get());
+        }
+        if (file != null) {
+            writeLine(className, artifacts, identicalIn);
+        }
+    }
+
+    /**
+     * @return the number of duplicate classes added so far
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the message listing the duplicate classes
+     */
+    String getMessage() {
+        StringBuilder buf = new StringBuilder(message == null ? "Duplicate classes found:" : message);
+        buf.append('\n');
+        int omittedClasses = count;
+        for (Map.Entry<Set<Artifact>, List<String>> entry : listedByArtifacts.entrySet()) {
+            int groupCount = countsByArtifacts.get(entry.getKey())[0];
+            appendArtifacts(buf, entry.getKey());
+            buf.append("\n  Duplicate classes:");
+            for (String description : entry.getValue()) {
+                buf.append("\n    ");
+                buf.append(description);
+            }
+            if (entry.getValue().size() < groupCount) {
+                buf.append("\n    And ")
+                        .append(groupCount - entry.getValue().size())
+                        .append(" more duplicate classes");
+            }
+            buf.append('\n');
+            omittedClasses -= groupCount;
+        }
+        if (listedByArtifacts.size() < countsByArtifacts.size()) {
+            buf.append("\n  And ")
+                    .append(omittedClasses)
+                    .append(" duplicate classes in ")
+                    .append(countsByArtifacts.size() - listedByArtifacts.size())
+                    .append(" more groups of artifacts\n");
+        }
+        if (file != null) {
+            buf.append("All ")
+                    .append(count)
+                    .append(" duplicate classes are listed in ")
+                    .append(file);
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private static void appendArtifacts(StringBuilder buf, Set<Artifact> artifacts) {
+        buf.append("\n  Found in:");
+        for (Artifact a : artifacts) {
+            buf.append("\n    ");
+            buf.append(a);
+        }
+    }
+
+    private void writeLine(String className, Set<Artifact> artifacts, Collection<Set<Artifact>> identicalIn)
+            throws IOException {
+        StringBuilder line = new StringBuilder("{\"class\":");
+        appendString(line, className);
+        line.append(",\"artifacts\":");
+        appendArray(line, artifacts);
+        line.append(",\"identicalIn\":[");
+        boolean first = true;
+        for (Set<Artifact> group : identicalIn) {
+            if (!first) {
+                line.append(',');
+            }
+            first = false;
+            appendArray(line, group);
+        }
+        line.append("]}\n");
+        if (writer == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+        writer.write(line.toString());
+    }
+
+    private static void appendArray(StringBuilder line, Set<Artifact> artifacts) {
+        line.append('[');
+        boolean first = true;
+        for (Artifact artifact : artifacts) {
+            if (!first) {
+                line.append(',');
+            }
+            first = false;
+            appendString(line, artifact.toString());
+        }
+        line.append(']');
+    }
+
+    private static void appendString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -25,22 +25,18 @@ import javax.inject.Named;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.IntPredicate;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.filter.AndArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.shared.artifact.filter.AbstractStrictPatternArtifactFilter;
@@ -62,8 +58,6 @@ public class EnforceBytecodeVersion extends AbstractResolveDependencies {
      */
     private static final String[] DEFAULT_CLASSES_IGNORE_BEFORE_JDK_9 = {"module-info"};
 
-    private static final Pattern MULTIRELEASE = Pattern.compile("META-INF/versions/(\\d+)/.*");
-
     static {
         JDK_TO_MAJOR_VERSION_NUMBER_MAPPING.put("1.1", 45);
         JDK_TO_MAJOR_VERSION_NUMBER_MAPPING.put("1.2", 46);
@@ -117,8 +111,9 @@ public class EnforceBytecodeVersion extends AbstractResolveDependencies {
     }
 
     @Inject
-    protected EnforceBytecodeVersion(MavenSession session, RepositorySystem repositorySystem) {
-        super(session, repositorySystem);
+    protected EnforceBytecodeVersion(
+            MavenSession session, RepositorySystem repositorySystem, ArtifactScanIndex scanIndex) {
+        super(session, repositorySystem, scanIndex);
     }
 
     static String renderVersion(int major, int minor) {
@@ -186,8 +181,15 @@ public class EnforceBytecodeVersion extends AbstractResolveDependencies {
      */
     private boolean strict = false;
 
+    /**
+     * Stop at the first artifact with a banned bytecode version instead of reporting all of them
+     */
+    private boolean failFast = false;
+
     private List<IgnorableDependency> ignorableDependencies = new ArrayList<>();
 
+    private ClassNameMatcher ignoreMatcher;
+
     @Override
     protected void handleArtifacts(Set<Artifact> artifacts) throws EnforcerRuleException {
         computeParameters();
@@ -244,18 +246,27 @@ public class EnforceBytecodeVersion extends AbstractResolveDependencies {
             ignorableDependency.applyIgnoreClasses(ignoreClasses, false);
             ignorableDependencies.add(ignorableDependency);
         }
+        ignoreMatcher = compileIgnores(ignorableDependencies);
     }
 
     protected Set<Artifact> checkDependencies(Set<Artifact> dependencies) throws EnforcerRuleException {
         long beforeCheck = System.currentTimeMillis();
         Set<Artifact> problematic = new LinkedHashSet<>();
-        for (Artifact artifact : dependencies) {
-            getLog().debug("Analyzing artifact " + artifact);
-            String problem = isBadArtifact(artifact);
-            if (problem != null) {
-                getLog().info(problem);
-                problematic.add(artifact);
-            }
+        try (ScanExecutor scanExecutor = createScanExecutor()) {
+            scanExecutor.forEachOrdered(
+                    new ArrayList<>(dependencies),
+                    artifact -> {
+                        getLog().debug("Analyzing artifact " + artifact);
+                        return isBadArtifact(artifact);
+                    },
+                    (artifact, problem) -> {
+                        if (problem != null) {
+                            getLog().info(problem);
+                            problematic.add(artifact);
+                            return !failFast;
+                        }
+                        return true;
+                    });
         }
         getLog().debug("Bytecode version analysis took " + (System.currentTimeMillis() - beforeCheck) + " ms");
         return problematic;
@@ -269,63 +280,52 @@ public class EnforceBytecodeVersion extends AbstractResolveDependencies {
             // which packaging type is pom.
             return null;
         }
-        if (!f.getName().endsWith(".jar")) {
+        if (!f.getName().endsWith(".jar") || ignoreMatcher.matchesEverything(null)) {
             return null;
         }
-        JarFile jarFile = null;
+        JarContents jarContents = getJarContents(f);
         try {
-            jarFile = new JarFile(f);
+            int classEntryCount = jarContents.getClassEntryCount();
             getLog().debug(f.getName() + " => " + f.getPath());
-            byte[] magicAndClassFileVersion = new byte[8];
-            JAR:
-            for (Enumeration<JarEntry> e = jarFile.entries(); e.hasMoreElements(); ) {
-                JarEntry entry = e.nextElement();
-                if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
-                    for (IgnorableDependency i : ignorableDependencies) {
-                        if (i.matches(entry.getName())) {
-                            continue JAR;
-                        }
-                    }
+            // the versions are read up front, in parallel ranges for huge jars. The inventory is kept in the session
+            // index and in the class index cache, so other modules and later builds don't read the jar again
+            IntPredicate checkedReleases = strict ? release -> true : getCheckedReleases(jarContents);
+            ClassVersionInventory inventory = jarContents.getVersionInventory(checkedReleases);
+            if (inventory.isWithin(maxJavaMajorVersionNumber, maxJavaMinorVersionNumber, checkedReleases)) {
+                // no checked class exceeds the limit, whatever is ignored
+                return null;
+            }
 
-                    try (InputStream is = jarFile.getInputStream(entry)) {
-                        int total = magicAndClassFileVersion.length;
-                        while (total > 0) {
-                            int read =
-                                    is.read(magicAndClassFileVersion, magicAndClassFileVersion.length - total, total);
-                            if (read == -1) {
-                                throw new EOFException(f.toString());
-                            }
-                            total -= read;
-                        }
+            // in non-strict mode only the base entries decide, versioned entries are checked afterwards for warnings.
+            // The names are matched without decoding them, only the names in messages are decoded
+            List<Integer> versionedEntries = new ArrayList<>();
+            for (int index = 0; index < classEntryCount; index++) {
+                int release = strict ? 0 : jarContents.getRelease(index);
+                if (release > 0) {
+                    if (checkedReleases.test(release)) {
+                        versionedEntries.add(index);
                     }
+                } else if (!isIgnored(jarContents, index) && exceedsLimit(f, jarContents, index)) {
+                    return "Restricted to " + renderVersion(maxJavaMajorVersionNumber, maxJavaMinorVersionNumber)
+                            + " yet " + a + " contains " + jarContents.getClassEntryName(index) + " targeted to "
+                            + renderVersion(jarContents.getMajorVersion(index), jarContents.getMinorVersion(index));
+                }
+            }
 
-                    int minor = (magicAndClassFileVersion[4] << 8) + magicAndClassFileVersion[5];
-                    int major = (magicAndClassFileVersion[6] << 8) + magicAndClassFileVersion[7];
-
-                    // Assuming regex match is more expensive, verify bytecode versions first
-
-                    if ((major > maxJavaMajorVersionNumber)
-                            || (major == maxJavaMajorVersionNumber && minor > maxJavaMinorVersionNumber)) {
-
-                        Matcher matcher = MULTIRELEASE.matcher(entry.getName());
-
-                        if (!strict && matcher.matches()) {
-                            Integer maxExpectedMajor = decodeMajorVersion(matcher.group(1));
-
-                            if (maxExpectedMajor == null) {
-                                getLog().warn("Unknown bytecodeVersion for " + a + " : " + entry.getName() + ": got "
-                                        + maxExpectedMajor + " class-file-version");
-                            } else if (major > maxExpectedMajor) {
-                                getLog().warn("Invalid bytecodeVersion for " + a + " : " + entry.getName()
-                                        + ": expected lower or equal to " + maxExpectedMajor + ", but was " + major);
-                            }
-                        } else {
-                            return "Restricted to "
-                                    + renderVersion(maxJavaMajorVersionNumber, maxJavaMinorVersionNumber)
-                                    + " yet " + a + " contains " + entry.getName() + " targeted to "
-                                    + renderVersion(major, minor);
-                        }
-                    }
+            // versioned entries beyond the limit only cause warnings
+            for (int index : versionedEntries) {
+                if (isIgnored(jarContents, index) || !exceedsLimit(f, jarContents, index)) {
+                    continue;
+                }
+                String entryName = jarContents.getClassEntryName(index);
+                Integer maxExpectedMajor = decodeMajorVersion(String.valueOf(jarContents.getRelease(index)));
+                int major = jarContents.getMajorVersion(index);
+                if (maxExpectedMajor == null) {
+                    getLog().warn("Unknown bytecodeVersion for " + a + " : " + entryName + ": got " + maxExpectedMajor
+                            + " class-file-version");
+                } else if (major > maxExpectedMajor) {
+                    getLog().warn("Invalid bytecodeVersion for " + a + " : " + entryName
+                            + ": expected lower or equal to " + maxExpectedMajor + ", but was " + major);
                 }
             }
         } catch (IOException e) {
@@ -333,19 +333,45 @@ public class EnforceBytecodeVersion extends AbstractResolveDependencies {
         } catch (IllegalArgumentException e) {
             throw new EnforcerRuleException("Error while reading " + f, e);
         } finally {
-            closeQuietly(jarFile);
+            // the inventory stays in the session index, the jar file isn't needed anymore
+            releaseJarContents(jarContents);
         }
         return null;
     }
 
-    private void closeQuietly(JarFile jarFile) {
-        if (jarFile != null) {
-            try {
-                jarFile.close();
-            } catch (IOException ioe) {
-                getLog().warn("Exception catched while closing " + jarFile.getName() + ": " + ioe.getMessage());
-            }
+    /**
+     * In non-strict mode the base entries are checked, and the {@code META-INF/versions/N} trees of a Multi-Release JAR
+     * which a JVM within the limit loads are checked for warnings. The manifest is only read if there are such trees,
+     * other trees are never read.
+     */
+    private IntPredicate getCheckedReleases(JarContents jarContents) throws IOException {
+        IntPredicate base = release -> release == 0;
+        ClassVersionInventory inventory = jarContents.getVersionInventory(base);
+        boolean versioned = false;
+        for (ClassVersionInventory.Tree tree : inventory.getTrees()) {
+            versioned |= tree.getRelease() > 0;
+        }
+        if (!versioned || !jarContents.isMultiRelease()) {
+            return base;
         }
+        return release -> {
+            Integer major = decodeMajorVersion(String.valueOf(release));
+            return release == 0 || major == null || major <= maxJavaMajorVersionNumber;
+        };
+    }
+
+    private boolean isIgnored(JarContents jarContents, int index) throws IOException {
+        return ignoreMatcher.matches(jarContents.getClassEntryNameChars(index));
+    }
+
+    private boolean exceedsLimit(File f, JarContents jarContents, int index) throws IOException {
+        int major = jarContents.getMajorVersion(index);
+        if (major == JarContents.UNKNOWN_VERSION) {
+            throw new EOFException(f.toString());
+        }
+        return major > maxJavaMajorVersionNumber
+                || (major == maxJavaMajorVersionNumber
+                        && jarContents.getMinorVersion(index) > maxJavaMinorVersionNumber);
     }
 
     public void setMaxJavaMajorVersionNumber(int maxJavaMajorVersionNumber) {
@@ -364,16 +390,21 @@ public class EnforceBytecodeVersion extends AbstractResolveDependencies {
         this.strict = strict;
     }
 
-    // copied from RequireReleaseDeps
-    /*
-     * Filter the dependency artifacts according to the includes and excludes If includes and excludes are both null,
-     * the original set is returned.
-     * @param dependencies the list of dependencies to filter
-     * @return the resulting set of dependencies
+    /**
+     * Stop at the first artifact with a banned bytecode version instead of reporting all of them
+     * @param failFast the fail-fast setting
      */
-    private Set<Artifact> filterArtifacts(Set<Artifact> dependencies) {
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * The artifacts excluded by the includes and excludes are neither resolved nor checked.
+     */
+    @Override
+    protected ArtifactFilter getArtifactFilter() {
         if (includes == null && excludes == null) {
-            return dependencies;
+            return null;
         }
 
         AndArtifactFilter filter = new AndArtifactFilter();
@@ -383,6 +414,21 @@ public class EnforceBytecodeVersion extends AbstractResolveDependencies {
         if (excludes != null) {
             filter.add(new StrictPatternExcludesArtifactFilter(excludes));
         }
+        return filter;
+    }
+
+    // copied from RequireReleaseDeps
+    /*
+     * Filter the dependency artifacts according to the includes and excludes If includes and excludes are both null,
+     * the original set is returned.
+     * @param dependencies the list of dependencies to filter
+     * @return the resulting set of dependencies
+     */
+    private Set<Artifact> filterArtifacts(Set<Artifact> dependencies) {
+        ArtifactFilter filter = getArtifactFilter();
+        if (filter == null) {
+            return dependencies;
+        }
 
         Set<Artifact> result = new HashSet<>();
         for (Artifact artifact : dependencies) {
@@ -0,0 +1,122 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.stream.IntStream;
+
+/**
+ * Splits the entries of a large archive into ranges which are processed in parallel.
+ * <p>
+ * This is independent of the parallelism across artifacts: a single huge shaded jar would otherwise keep one thread
+ * busy while the others are done. The ranges run in the common fork join pool, which the calling thread joins.
+ */
+final class EntryRanges {
+    /** the smallest number of entries processed by one task */
+    private static final int MIN_RANGE_SIZE = 1024;
+
+    /**
+     * A task for the entries in a range. Tasks for different ranges run concurrently.
+     *
+     * @param <E> the exception thrown by the task
+     */
+    @FunctionalInterface
+    interface RangeTask<E extends Exception> {
+        void run(int from, int to) throws E;
+    }
+
+    /**
+     * Carries the exception of a task out of the fork join pool.
+     */
+    private static final class RangeFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RangeFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private EntryRanges() {}
+
+    /**
+     * @param size the number of entries
+     * @param threshold the number of entries from which on they are processed in parallel, {@code 0} to never
+     *            process them in parallel
+     * @param task the task to run for each range
+     * @param <E> the exception thrown by the task
+     * @throws E if a task failed
+     */
+    static <E extends Exception> void forEach(int size, int threshold, RangeTask<E> task) throws E {
+        forEachOf(size, count(size, threshold), task);
+    }
+
+    /**
+     * @param size the number of entries
+     * @param threshold the number of entries from which on they are processed in parallel, {@code 0} to never
+     *            process them in parallel
+     * @return the number of ranges the entries are split into
+     */
+    static int count(int size, int threshold) {
+        return threshold <= 0 || size < threshold
+                ? 1
+                : Math.max(
+                        1, Math.min(size / MIN_RANGE_SIZE, Runtime.getRuntime().availableProcessors() * 4));
+    }
+
+    /**
+     * @param size the number of entries
+     * @param ranges the number of ranges, see {@link #count(int, int)}
+     * @return the number of entries in each range but the last, the index of a range is {@code from / rangeSize}
+     */
+    static int rangeSize(int size, int ranges) {
+        return Math.max(1, (size + ranges - 1) / ranges);
+    }
+
+    /**
+     * @param size the number of entries
+     * @param ranges the number of ranges, see {@link #count(int, int)}
+     * @param task the task to run for each range, ranges of {@link #rangeSize(int, int)} entries
+     * @param <E> the exception thrown by the task
+     * @throws E if a task failed
+     */
+    static <E extends Exception> void forEachOf(int size, int ranges, RangeTask<E> task) throws E {
+        if (ranges <= 1) {
+            task.run(0, size);
+            return;
+        }
+        int rangeSize = rangeSize(size, ranges);
+        try {
+            IntStream.range(0, ranges).parallel().forEach(range -> {
+                int from = range * rangeSize;
+                int to = Math.min(size, from + rangeSize);
+                try {
+                    task.run(from, to);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RangeFailure(e);
+                }
+            });
+        } catch (RangeFailure e) {
+            @SuppressWarnings("unchecked")
+            E cause = (E) e.getCause();
+            throw cause;
+        }
+    }
+}
@@ -0,0 +1,644 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+import java.util.jar.Manifest;
+
+/**
+ * The class entries of a single jar file as seen by the dependency rules.
+ * <p>
+ * The CRC-32s and sizes of the class entries are read once from the central directory. Their names are only decoded
+ * when requested, {@link #getClassNameHash(int)} hashes the raw bytes instead. The class file version and the
+ * content hash of an entry are only read when they are requested for that entry. The jar file is only kept open while
+ * its content is read and for a few recently read jar files, see {@link ZipCentralDirectory}.
+ * All results are kept for the lifetime of the owning {@link ArtifactScanIndex} and can additionally be kept in a
+ * {@link JarContentsStore} to survive across builds. Instances are thread-safe.
+ */
+public class JarContents {
+    /** Marks a class entry whose header could not be read, e.g. because it is shorter than 8 bytes. */
+    public static final int UNKNOWN_VERSION = -1;
+
+    /** Marks a class entry whose header hasn't been read yet, stored as {@link Short#MIN_VALUE}. */
+    static final int NOT_READ = Integer.MIN_VALUE;
+
+    private final File file;
+
+    /** the decoded names, only kept once {@link #getClassEntryNames()} was requested */
+    private volatile List<String> classEntryNames;
+
+    /** the CRC-32 of each class entry as in the central directory */
+    private int[] crcs;
+
+    /** the uncompressed size of each class entry as in the central directory */
+    private long[] sizes;
+
+    private int[] majorVersions;
+
+    private int[] minorVersions;
+
+    /** the content digests of the class entries, computed with {@link #digestAlgorithm} */
+    private AtomicReferenceArray<ContentDigest> digests;
+
+    private ContentHashAlgorithm digestAlgorithm;
+
+    /** the size of the jar file and the names, CRC-32s and sizes of its class entries, computed on first request */
+    private ContentDigest fingerprint;
+
+    /** the SHA-256 digest of the whole jar file, computed on first request */
+    private ContentDigest fileDigest;
+
+    private ClassVersionInventory versionInventory;
+
+    private Boolean multiRelease;
+
+    private final byte[] magicAndClassFileVersion = new byte[8];
+
+    /** the number of class entries from which on they are read in parallel ranges, {@code 0} for never */
+    private int parallelThreshold;
+
+    /** the central directory of the jar file, kept until {@link #release()} */
+    private ZipCentralDirectory directory;
+
+    /** the key of the jar in the persistent store, computed on first request */
+    private String cacheKey;
+
+    /** {@code true} once the persistent store has been consulted */
+    private boolean loaded;
+
+    /** {@code true} if something was read from the jar file which isn't in the persistent store yet */
+    private volatile boolean changed;
+
+    JarContents(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the jar file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the names of all class entries in the order they appear in the jar file
+     * @throws IOException if the jar file can't be read
+     */
+    public synchronized List<String> getClassEntryNames() throws IOException {
+        if (classEntryNames == null) {
+            ZipCentralDirectory directory = getDirectory();
+            String[] names = new String[getClassEntryCount()];
+            EntryRanges.forEach(names.length, parallelThreshold, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    names[i] = directory.getName(i);
+                }
+            });
+            classEntryNames = Collections.unmodifiableList(Arrays.asList(names));
+        }
+        return classEntryNames;
+    }
+
+    /**
+     * @return {@code true} if the decoded names are kept, see {@link #getClassEntryNames()}
+     */
+    boolean hasDecodedNames() {
+        return classEntryNames != null;
+    }
+
+    /**
+     * @return the number of class entries
+     * @throws IOException if the jar file can't be read
+     */
+    public synchronized int getClassEntryCount() throws IOException {
+        readEntries();
+        return crcs.length;
+    }
+
+    /**
+     * Decodes a single name, unlike {@link #getClassEntryNames()} the name isn't kept.
+     *
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return the name of the class entry
+     * @throws IOException if the jar file can't be read
+     */
+    String getClassEntryName(int index) throws IOException {
+        List<String> names = classEntryNames;
+        return names != null ? names.get(index) : getDirectory().getName(index);
+    }
+
+    /**
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return the name of the class entry, without copying it if it's ASCII
+     * @throws IOException if the jar file can't be read
+     */
+    CharSequence getClassEntryNameChars(int index) throws IOException {
+        List<String> names = classEntryNames;
+        return names != null ? names.get(index) : getDirectory().getNameChars(index);
+    }
+
+    /**
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return {@code N} if the class entry is part of the {@code META-INF/versions/N} tree, {@code 0} otherwise
+     * @throws IOException if the jar file can't be read
+     */
+    int getRelease(int index) throws IOException {
+        return ClassVersionInventory.releaseOf(getClassEntryNameChars(index));
+    }
+
+    /**
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return the {@link ClassNameHashes#hash(String) hash} of the class entry name, computed on its raw bytes
+     * @throws IOException if the jar file can't be read
+     */
+    long getClassNameHash(int index) throws IOException {
+        return getDirectory().getNameHash(index);
+    }
+
+    private void readEntries() throws IOException {
+        if (crcs == null) {
+            ZipCentralDirectory directory = getDirectory();
+            int[] entryCrcs = new int[directory.size()];
+            long[] entrySizes = new long[entryCrcs.length];
+            for (int i = 0; i < entryCrcs.length; i++) {
+                entryCrcs[i] = (int) directory.getCrc(i);
+                entrySizes[i] = directory.getSize(i);
+            }
+            crcs = entryCrcs;
+            sizes = entrySizes;
+            changed = true;
+        }
+    }
+
+    /**
+     * Entries with a different CRC-32 or size have a different content, this is known without reading them.
+     *
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return the CRC-32 of the class entry content as recorded in the central directory
+     * @throws IOException if the jar file can't be read
+     */
+    public synchronized long getCrc(int index) throws IOException {
+        readEntries();
+        return crcs[index] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return the uncompressed size of the class entry as recorded in the central directory
+     * @throws IOException if the jar file can't be read
+     */
+    public synchronized long getSize(int index) throws IOException {
+        readEntries();
+        return sizes[index];
+    }
+
+    /**
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return the major class file version or {@link #UNKNOWN_VERSION}
+     * @throws IOException if the jar file can't be read
+     */
+    public synchronized int getMajorVersion(int index) throws IOException {
+        readVersion(index);
+        return majorVersions[index];
+    }
+
+    /**
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return the minor class file version or {@link #UNKNOWN_VERSION}
+     * @throws IOException if the jar file can't be read
+     */
+    public synchronized int getMinorVersion(int index) throws IOException {
+        readVersion(index);
+        return minorVersions[index];
+    }
+
+    /**
+     * @return the highest class file versions of the jar, computed from the versions of all class entries
+     * @throws IOException if the jar file can't be read
+     */
+    public ClassVersionInventory getVersionInventory() throws IOException {
+        return getVersionInventory(release -> true);
+    }
+
+    /**
+     * Only the class entries of the requested trees are read, e.g. the {@code META-INF/versions/N} trees which a JVM
+     * never loads needn't be. The inventory lists the other trees without versions.
+     *
+     * @param releases the releases of the trees to read, {@code 0} for the base entries
+     * @return the highest class file versions of the jar, at least for the requested trees
+     * @throws IOException if the jar file can't be read
+     */
+    public synchronized ClassVersionInventory getVersionInventory(IntPredicate releases) throws IOException {
+        if (versionInventory == null || !versionInventory.isRead(releases)) {
+            // the releases are taken from the raw names, the names aren't decoded and kept for this
+            int[] entryReleases = new int[getClassEntryCount()];
+            for (int i = 0; i < entryReleases.length; i++) {
+                entryReleases[i] = getRelease(i);
+            }
+            readVersions(entryReleases, releases);
+            versionInventory = ClassVersionInventory.of(entryReleases, majorVersions, minorVersions);
+            changed = true;
+        }
+        return versionInventory;
+    }
+
+    /**
+     * @return the highest class file versions of the jar if they are known already, {@code null} otherwise
+     */
+    public synchronized ClassVersionInventory getKnownVersionInventory() {
+        return versionInventory;
+    }
+
+    /**
+     * The hash of an entry is only computed when requested.
+     *
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @return the SHA-256 hash of the class entry content
+     * @throws IOException if the jar file can't be read
+     */
+    public String getHash(int index) throws IOException {
+        return getDigest(index, ContentHashAlgorithm.SHA_256).toString();
+    }
+
+    /**
+     * Jars published under several coordinates, e.g. relocations or classifier copies, have the same content. Only
+     * jars with the same size and the same class entries in their central directories are compared by the digest of
+     * the whole file, which is computed once per jar and reads it without inflating any entry. Otherwise their class
+     * entries have to be compared one by one.
+     *
+     * @param other the contents of another jar file
+     * @return {@code true} if both jar files have the same content
+     * @throws IOException if a jar file can't be read
+     */
+    boolean hasSameContentAs(JarContents other) throws IOException {
+        if (other == this) {
+            return true;
+        }
+        return getFingerprint().equals(other.getFingerprint())
+                && getFileDigest().equals(other.getFileDigest());
+    }
+
+    private synchronized ContentDigest getFingerprint() throws IOException {
+        if (fingerprint == null) {
+            readEntries();
+            ByteBuffer values = ByteBuffer.allocate(12 + crcs.length * 20);
+            values.putLong(file.length()).putInt(crcs.length);
+            for (int i = 0; i < crcs.length; i++) {
+                values.putInt(crcs[i]).putLong(sizes[i]).putLong(getClassNameHash(i));
+            }
+            values.flip();
+            fingerprint = ContentHashAlgorithm.MURMUR3_128.digest(values);
+        }
+        return fingerprint;
+    }
+
+    private synchronized ContentDigest getFileDigest() throws IOException {
+        if (fileDigest == null) {
+            fileDigest = ContentHashAlgorithm.SHA_256.digest(file.toPath());
+        }
+        return fileDigest;
+    }
+
+    /**
+     * The digest of an entry is only computed when requested. Only the digests of the last requested algorithm are
+     * kept, and only SHA-256 digests are kept in the persistent store. Different entries are read and digested
+     * concurrently.
+     *
+     * @param index the index of the class entry as in {@link #getClassEntryNames()}
+     * @param algorithm the algorithm to digest the content with
+     * @return the digest of the class entry content
+     * @throws IOException if the jar file can't be read
+     */
+    ContentDigest getDigest(int index, ContentHashAlgorithm algorithm) throws IOException {
+        AtomicReferenceArray<ContentDigest> entryDigests = prepareDigests(algorithm);
+        ContentDigest digest = entryDigests.get(index);
+        if (digest == null) {
+            digest = getDirectory().readContent(index, algorithm::digest);
+            entryDigests.set(index, digest);
+            changed = true;
+        }
+        return digest;
+    }
+
+    private synchronized AtomicReferenceArray<ContentDigest> prepareDigests(ContentHashAlgorithm algorithm)
+            throws IOException {
+        if (digests == null || digestAlgorithm != algorithm) {
+            digests = new AtomicReferenceArray<>(getClassEntryCount());
+            digestAlgorithm = algorithm;
+        }
+        return digests;
+    }
+
+    /**
+     * Close the jar file and drop its central directory, which is read again if more is requested.
+     */
+    public synchronized void release() {
+        if (directory != null) {
+            directory.close();
+            directory = null;
+        }
+    }
+
+    private synchronized ZipCentralDirectory getDirectory() throws IOException {
+        if (directory == null) {
+            directory = ZipCentralDirectory.readClassEntries(file);
+        }
+        return directory;
+    }
+
+    private void readVersions(int[] entryReleases, IntPredicate releases) throws IOException {
+        int size = entryReleases.length;
+        prepareVersions();
+        int first = 0;
+        while (first < size && (majorVersions[first] != NOT_READ || !releases.test(entryReleases[first]))) {
+            first++;
+        }
+        if (first == size) {
+            return;
+        }
+        ZipCentralDirectory directory = getDirectory();
+        try (Closeable lease = directory.keepOpen()) {
+            EntryRanges.forEach(size, parallelThreshold, (from, to) -> {
+                byte[] header = from == 0 ? magicAndClassFileVersion : new byte[8];
+                for (int index = from; index < to; index++) {
+                    if (releases.test(entryReleases[index])) {
+                        readVersion(directory, index, header);
+                    }
+                }
+            });
+        }
+        changed = true;
+    }
+
+    private void readVersion(int index) throws IOException {
+        prepareVersions();
+        if (majorVersions[index] == NOT_READ) {
+            readVersion(getDirectory(), index, magicAndClassFileVersion);
+            changed = true;
+        }
+    }
+
+    private void prepareVersions() throws IOException {
+        if (majorVersions == null) {
+            int size = getClassEntryCount();
+            majorVersions = new int[size];
+            minorVersions = new int[size];
+            Arrays.fill(majorVersions, NOT_READ);
+            Arrays.fill(minorVersions, NOT_READ);
+        }
+    }
+
+    /**
+     * Read the version of an entry unless known. Different entries may be read concurrently, each with its own
+     * {@code header} array.
+     */
+    private void readVersion(ZipCentralDirectory directory, int index, byte[] header) throws IOException {
+        if (majorVersions[index] != NOT_READ) {
+            return;
+        }
+        if (directory.readContent(index, header) == header.length) {
+            minorVersions[index] = (header[4] << 8) + header[5];
+            majorVersions[index] = (header[6] << 8) + header[7];
+        } else {
+            minorVersions[index] = UNKNOWN_VERSION;
+            majorVersions[index] = UNKNOWN_VERSION;
+        }
+    }
+
+    /**
+     * Jars with at least this many class entries have their names and versions read in parallel ranges of entries.
+     *
+     * @param parallelThreshold the number of class entries, {@code 0} to never read them in parallel
+     */
+    synchronized void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @return {@code true} if the manifest of the jar declares {@code Multi-Release: true}
+     * @throws IOException if the jar file can't be read
+     */
+    public synchronized boolean isMultiRelease() throws IOException {
+        if (multiRelease == null) {
+            byte[] content = getDirectory().readManifest();
+            boolean result = false;
+            if (content != null) {
+                Manifest manifest = new Manifest(new ByteArrayInputStream(content));
+                result = "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+            }
+            multiRelease = result;
+            changed = true;
+        }
+        return multiRelease;
+    }
+
+    /**
+     * Restore whatever the persistent store knows about this jar file. The store is only consulted once.
+     *
+     * @param store the persistent store
+     * @throws IOException if the jar file or the store can't be read
+     */
+    synchronized void load(JarContentsStore store) throws IOException {
+        if (!loaded) {
+            loaded = true;
+            store.read(getCacheKey(), this);
+        }
+    }
+
+    /**
+     * @return the key of the jar in the persistent store, see {@link JarContentsStore#keyOf(File, int[], long[])}
+     * @throws IOException if the jar file can't be read
+     */
+    private String getCacheKey() throws IOException {
+        if (cacheKey == null) {
+            readEntries();
+            cacheKey = JarContentsStore.keyOf(file, crcs, sizes);
+        }
+        return cacheKey;
+    }
+
+    /**
+     * Write this jar's contents to the persistent store, if anything new was read from the jar file since it was
+     * loaded.
+     *
+     * @param store the persistent store
+     * @throws IOException if the store can't be written
+     */
+    synchronized void save(JarContentsStore store) throws IOException {
+        if (loaded && changed && crcs != null) {
+            store.write(cacheKey, this);
+            changed = false;
+        }
+    }
+
+    /**
+     * Serialize the known contents, see {@link #restore(ByteBuffer)} for the format.
+     */
+    synchronized void writeTo(DataOutput out) throws IOException {
+        ZipCentralDirectory directory = getDirectory();
+        out.writeInt(crcs.length);
+        for (int i = 0; i < crcs.length; i++) {
+            directory.writeName(i, out);
+        }
+        for (int i = 0; i < crcs.length; i++) {
+            out.writeInt(crcs[i]);
+            out.writeLong(sizes[i]);
+        }
+        out.writeBoolean(majorVersions != null);
+        if (majorVersions != null) {
+            for (int i = 0; i < majorVersions.length; i++) {
+                out.writeShort(majorVersions[i] == NOT_READ ? Short.MIN_VALUE : majorVersions[i]);
+                out.writeShort(minorVersions[i] == NOT_READ ? Short.MIN_VALUE : minorVersions[i]);
+            }
+        }
+        boolean hasHashes = digests != null && digestAlgorithm == ContentHashAlgorithm.SHA_256;
+        out.writeBoolean(hasHashes);
+        if (hasHashes) {
+            for (int i = 0; i < digests.length(); i++) {
+                ContentDigest digest = digests.get(i);
+                out.writeBoolean(digest != null);
+                if (digest != null) {
+                    out.write(digest.getBytes());
+                }
+            }
+        }
+        out.writeBoolean(versionInventory != null);
+        if (versionInventory != null) {
+            versionInventory.writeTo(out);
+        }
+        out.writeByte(multiRelease == null ? -1 : multiRelease ? 1 : 0);
+    }
+
+    /**
+     * Restore the contents written by {@link #writeTo(DataOutput)}. Data which is already known is kept, nothing is
+     * restored if the entries differ from those in the jar file. The number of entries is checked before anything is
+     * allocated for them.
+     * <pre>
+     * int count
+     * count times: unsigned short length, UTF-8 bytes of the entry name
+     * count times: int CRC-32, long size
+     * boolean hasVersions, if true count times: short major, short minor, {@link Short#MIN_VALUE} if not read
+     * boolean hasHashes, if true count times: boolean present, if true 32 bytes SHA-256
+     * boolean hasVersionInventory, if true the inventory as written by {@link ClassVersionInventory#writeTo(DataOutput)}
+     * byte multiRelease, -1 if unknown, 0 if false, 1 if true
+     * </pre>
+     */
+    synchronized boolean restore(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        readEntries();
+        if (count != crcs.length) {
+            // stale or corrupt data
+            return false;
+        }
+        int namesStart = buffer.position();
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getShort() & 0xFFFF;
+            buffer.position(buffer.position() + length);
+        }
+        int[] restoredCrcs = new int[count];
+        long[] restoredSizes = new long[count];
+        for (int i = 0; i < count; i++) {
+            restoredCrcs[i] = buffer.getInt();
+            restoredSizes[i] = buffer.getLong();
+        }
+        int[] major = null;
+        int[] minor = null;
+        if (buffer.get() != 0) {
+            major = new int[count];
+            minor = new int[count];
+            for (int i = 0; i < count; i++) {
+                major[i] = restoreVersion(buffer.getShort());
+                minor[i] = restoreVersion(buffer.getShort());
+            }
+        }
+        AtomicReferenceArray<ContentDigest> restoredDigests = null;
+        if (buffer.get() != 0) {
+            restoredDigests = new AtomicReferenceArray<>(count);
+            for (int i = 0; i < count; i++) {
+                if (buffer.get() != 0) {
+                    byte[] hash = new byte[32];
+                    buffer.get(hash);
+                    restoredDigests.set(i, ContentDigest.of(hash));
+                }
+            }
+        }
+        ClassVersionInventory restoredInventory = buffer.get() != 0 ? ClassVersionInventory.restore(buffer) : null;
+        byte restoredMultiRelease = buffer.get();
+
+        if (!Arrays.equals(crcs, restoredCrcs)
+                || !Arrays.equals(sizes, restoredSizes)
+                || !namesEqual(buffer, namesStart)) {
+            // stale or foreign data, keep what was read from the jar
+            return false;
+        }
+
+        if (majorVersions == null) {
+            majorVersions = major;
+            minorVersions = minor;
+        } else if (major != null) {
+            for (int i = 0; i < count; i++) {
+                if (majorVersions[i] == NOT_READ) {
+                    majorVersions[i] = major[i];
+                    minorVersions[i] = minor[i];
+                }
+            }
+        }
+        if (digests == null && restoredDigests != null) {
+            digests = restoredDigests;
+            digestAlgorithm = ContentHashAlgorithm.SHA_256;
+        }
+        if (versionInventory == null) {
+            versionInventory = restoredInventory;
+        }
+        if (multiRelease == null && restoredMultiRelease >= 0) {
+            multiRelease = restoredMultiRelease == 1;
+        }
+        return true;
+    }
+
+    /**
+     * Compare the names on their raw bytes, nothing is decoded.
+     */
+    private boolean namesEqual(ByteBuffer buffer, int namesStart) throws IOException {
+        ZipCentralDirectory directory = getDirectory();
+        int position = namesStart;
+        for (int i = 0; i < crcs.length; i++) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            if (!directory.nameEquals(i, buffer, position + 2, length)) {
+                return false;
+            }
+            position += 2 + length;
+        }
+        return true;
+    }
+
+    private static int restoreVersion(short version) {
+        return version == Short.MIN_VALUE ? NOT_READ : version;
+    }
+}
@@ -0,0 +1,144 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Persistent store for {@link JarContents}, so the class index of a jar survives across builds.
+ * <p>
+ * Every jar gets one compact binary file, named after a key derived from the jar file and its central directory, see
+ * {@link #keyOf(File, int[], long[])}. The key only locates the index, it doesn't claim anything about the content of
+ * the jar. Files are written atomically and memory-mapped when read.
+ */
+class JarContentsStore {
+    private static final int MAGIC = 0x45454349;
+
+    private static final int FORMAT_VERSION = 5;
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory to keep the index files in, it is created when needed
+     */
+    JarContentsStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the directory to keep the index files in
+     */
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Derive the key of a jar's index from the size and the last modification time of the jar file and from the
+     * CRC-32s and sizes of its class entries as in the central directory. Nothing else of the jar is read, and the
+     * names of the entries are compared when the index is restored.
+     *
+     * @param jar the jar file
+     * @param crcs the CRC-32s of the class entries
+     * @param sizes the uncompressed sizes of the class entries
+     * @return the lower case hex SHA-1 of these values
+     */
+    static String keyOf(File jar, int[] crcs, long[] sizes) {
+        ByteBuffer values = ByteBuffer.allocate(20 + crcs.length * 12);
+        values.putLong(jar.length()).putLong(jar.lastModified()).putInt(crcs.length);
+        for (int i = 0; i < crcs.length; i++) {
+            values.putInt(crcs[i]).putLong(sizes[i]);
+        }
+        return DigestUtils.sha1Hex(values.array());
+    }
+
+    /**
+     * Restore the cached index of a jar, if there is one.
+     *
+     * @param key the key of the jar, see {@link #keyOf(File, int[], long[])}
+     * @param contents the contents to restore into
+     * @return {@code true} if a cached index of the same entries was found, {@code false} otherwise
+     * @throws IOException if the cached index or the jar file can't be read or the index is corrupt
+     */
+    boolean read(String key, JarContents contents) throws IOException {
+        Path file = fileOf(key);
+        FileChannel indexChannel;
+        try {
+            indexChannel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try (FileChannel channel = indexChannel) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported class index " + file);
+            }
+            return contents.restore(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt class index " + file, e);
+        }
+    }
+
+    /**
+     * Write the index of a jar, replacing an existing one atomically.
+     *
+     * @param key the key of the jar, see {@link #keyOf(File, int[], long[])}
+     * @param contents the contents to write
+     * @throws IOException if the index can't be written
+     */
+    void write(String key, JarContents contents) throws IOException {
+        Path file = fileOf(key);
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), key, ".tmp");
+        try {
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                contents.writeTo(out);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".idx");
+    }
+}
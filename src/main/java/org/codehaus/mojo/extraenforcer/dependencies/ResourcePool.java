@@ -0,0 +1,77 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of reusable objects, e.g. {@link java.util.zip.Inflater}s and their buffers.
+ * <p>
+ * Unlike a {@link ThreadLocal} this also reuses the objects when every class is read by a new (virtual) thread, and
+ * objects which don't fit into the pool are disposed right away instead of waiting for the garbage collector. Taking
+ * and returning an object doesn't allocate anything.
+ *
+ * @param <T> the type of the pooled objects
+ */
+final class ResourcePool<T> {
+    private final BlockingQueue<T> idle;
+
+    private final Supplier<T> factory;
+
+    private final Consumer<T> disposer;
+
+    /**
+     * @param capacity the maximum number of idle objects kept
+     * @param factory creates an object when none is idle
+     * @param disposer releases an object which isn't kept
+     */
+    ResourcePool(int capacity, Supplier<T> factory, Consumer<T> disposer) {
+        this.idle = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+        this.disposer = disposer;
+    }
+
+    /**
+     * @return an idle object or a new one, which must be given back with {@link #release(Object)}
+     */
+    T acquire() {
+        T resource = idle.poll();
+        return resource != null ? resource : factory.get();
+    }
+
+    /**
+     * @param resource an object which was acquired from this pool and is no longer used
+     */
+    void release(T resource) {
+        if (!idle.offer(resource)) {
+            disposer.accept(resource);
+        }
+    }
+
+    /**
+     * @return the number of idle objects
+     */
+    int idleCount() {
+        return idle.size();
+    }
+}
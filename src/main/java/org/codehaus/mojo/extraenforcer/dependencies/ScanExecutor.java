@@ -0,0 +1,201 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.enforcer.rule.api.EnforcerRuleError;
+import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
+
+/**
+ * Runs a scan task for each item of a list, sequentially on the calling thread or in parallel, and passes the results
+ * to a consumer on the calling thread in the order of the list.
+ * <p>
+ * Because results are consumed in order, the outcome doesn't depend on scheduling. When the consumer fails or stops,
+ * the remaining tasks are cancelled and running ones are interrupted. At most a few tasks per thread are scheduled
+ * ahead of the consumer, which keeps the number of pending results bounded. No task outlives {@link #close()}, so
+ * nothing a task opens is left behind once the scan is done.
+ */
+class ScanExecutor implements AutoCloseable {
+
+    /**
+     * A scan task for a single item.
+     *
+     * @param <T> the item type
+     * @param <R> the result type
+     */
+    @FunctionalInterface
+    interface Task<T, R> {
+        R apply(T item) throws EnforcerRuleException;
+    }
+
+    /**
+     * Consumer of a single scan result.
+     *
+     * @param <T> the item type
+     * @param <R> the result type
+     */
+    @FunctionalInterface
+    interface Consumer<T, R> {
+        /**
+         * @param item the scanned item
+         * @param result the result of the scan
+         * @return {@code false} to stop, the remaining tasks are cancelled
+         * @throws EnforcerRuleException to stop with an error, the remaining tasks are cancelled
+         */
+        boolean accept(T item, R result) throws EnforcerRuleException;
+    }
+
+    private static final int TASKS_AHEAD_PER_THREAD = 2;
+
+    private final ExecutorService executorService;
+
+    private final int window;
+
+    private ScanExecutor(ExecutorService executorService, int window) {
+        this.executorService = executorService;
+        this.window = window;
+    }
+
+    /**
+     * @param parallelism the number of items to scan in parallel, {@code 1} scans sequentially on the calling thread
+     *            and values below {@code 1} use the number of available processors
+     * @param useVirtualThreads use virtual threads instead of a fixed thread pool, if the Java runtime supports them
+     * @return the executor
+     */
+    static ScanExecutor create(int parallelism, boolean useVirtualThreads) {
+        int threads = parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        if (threads == 1) {
+            return new ScanExecutor(null, 1);
+        }
+        ExecutorService executorService = useVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(threads);
+        }
+        return new ScanExecutor(executorService, threads * TASKS_AHEAD_PER_THREAD);
+    }
+
+    /**
+     * @return {@code true} if items are scanned on the calling thread
+     */
+    boolean isSequential() {
+        return executorService == null;
+    }
+
+    /**
+     * Scan all items and consume the results in the order of the list, until the consumer stops.
+     *
+     * @param items the items to scan
+     * @param task the scan task
+     * @param consumer the consumer of the results
+     * @param <T> the item type
+     * @param <R> the result type
+     * @throws EnforcerRuleException if a task or the consumer fails, the remaining tasks are cancelled
+     */
+    <T, R> void forEachOrdered(List<T> items, Task<T, R> task, Consumer<T, R> consumer) throws EnforcerRuleException {
+        if (executorService == null) {
+            for (T item : items) {
+                if (!consumer.accept(item, task.apply(item))) {
+                    return;
+                }
+            }
+            return;
+        }
+
+        Deque<Future<R>> pending = new ArrayDeque<>();
+        int next = 0;
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                while (next < items.size() && next < i + window) {
+                    T item = items.get(next++);
+                    pending.add(executorService.submit(() -> task.apply(item)));
+                }
+                if (!consumer.accept(items.get(i), await(pending.poll()))) {
+                    return;
+                }
+            }
+        } finally {
+            for (Future<R> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Interrupt the tasks which are still running and wait until they are done.
+     */
+    @Override
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    // keep waiting, the tasks may still use what the caller releases next
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static <R> R await(Future<R> future) throws EnforcerRuleException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EnforcerRuleError("Interrupted while scanning dependencies", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof EnforcerRuleException) {
+                throw (EnforcerRuleException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new EnforcerRuleError(cause);
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            // virtual threads require Java 21+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.Objects;
+
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.util.artifact.JavaScopes;
+
+/**
+ * Applies the scope and optional filters of a rule while the dependency graph is collected, so the subtrees of the
+ * filtered dependencies are neither collected nor resolved.
+ * <p>
+ * The filters of the rule apply to the scopes after collection, a transitive dependency therefore is selected by the
+ * scope derived from its parent the same way the resolver derives it once the graph is complete.
+ */
+final class ScopeFilteringDependencySelector implements DependencySelector {
+
+    private final Collection<String> scopes;
+
+    private final Collection<String> ignoredScopes;
+
+    private final boolean ignoreOptionals;
+
+    /** the derived scope of the parent, {@code null} for the direct dependencies */
+    private final String parentScope;
+
+    /**
+     * @param scopes the scopes to select, all if empty
+     * @param ignoredScopes the scopes to skip
+     * @param ignoreOptionals {@code true} to skip optional dependencies
+     */
+    ScopeFilteringDependencySelector(
+            Collection<String> scopes, Collection<String> ignoredScopes, boolean ignoreOptionals) {
+        this(scopes, ignoredScopes, ignoreOptionals, null);
+    }
+
+    private ScopeFilteringDependencySelector(
+            Collection<String> scopes, Collection<String> ignoredScopes, boolean ignoreOptionals, String parentScope) {
+        this.scopes = scopes;
+        this.ignoredScopes = ignoredScopes;
+        this.ignoreOptionals = ignoreOptionals;
+        this.parentScope = parentScope;
+    }
+
+    @Override
+    public boolean selectDependency(Dependency dependency) {
+        if (ignoreOptionals && dependency.isOptional()) {
+            return false;
+        }
+        String scope = deriveScope(parentScope, dependency.getScope());
+        return (scopes.isEmpty() || scopes.contains(scope)) && !ignoredScopes.contains(scope);
+    }
+
+    @Override
+    public DependencySelector deriveChildSelector(DependencyCollectionContext context) {
+        Dependency dependency = context.getDependency();
+        if (dependency == null) {
+            // the children of the root are the direct dependencies
+            return this;
+        }
+        String scope = deriveScope(parentScope, dependency.getScope());
+        if (scope.isEmpty() || JavaScopes.COMPILE.equals(scope)) {
+            // the children of a compile dependency keep their scope, just like the direct dependencies
+            scope = null;
+        }
+        if (Objects.equals(scope, parentScope)) {
+            return this;
+        }
+        return new ScopeFilteringDependencySelector(scopes, ignoredScopes, ignoreOptionals, scope);
+    }
+
+    /**
+     * Same as the {@code JavaScopeDeriver} of the resolver.
+     */
+    static String deriveScope(String parentScope, String scope) {
+        if (JavaScopes.SYSTEM.equals(scope) || JavaScopes.TEST.equals(scope)) {
+            return scope;
+        } else if (parentScope == null || parentScope.isEmpty() || JavaScopes.COMPILE.equals(parentScope)) {
+            return scope;
+        } else if (JavaScopes.TEST.equals(parentScope) || JavaScopes.RUNTIME.equals(parentScope)) {
+            return parentScope;
+        } else if (JavaScopes.SYSTEM.equals(parentScope) || JavaScopes.PROVIDED.equals(parentScope)) {
+            return JavaScopes.PROVIDED;
+        } else {
+            return JavaScopes.RUNTIME;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ScopeFilteringDependencySelector)) {
+            return false;
+        }
+        ScopeFilteringDependencySelector other = (ScopeFilteringDependencySelector) o;
+        return ignoreOptionals == other.ignoreOptionals
+                && scopes.equals(other.scopes)
+                && ignoredScopes.equals(other.ignoredScopes)
+                && Objects.equals(parentScope, other.parentScope);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(scopes, ignoredScopes, ignoreOptionals, parentScope);
+    }
+}
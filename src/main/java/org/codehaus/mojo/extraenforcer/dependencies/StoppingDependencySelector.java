@@ -0,0 +1,65 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+
+/**
+ * Stops the collection of the dependency graph once the dependency a rule is looking for has been selected, so no
+ * further descriptor is read.
+ * <p>
+ * The selector and all the selectors derived from it share their state, the graph collected with it therefore only
+ * serves the rule which stopped it.
+ */
+final class StoppingDependencySelector implements DependencySelector {
+
+    private final Predicate<Dependency> last;
+
+    private final AtomicBoolean stopped;
+
+    /**
+     * @param last tells whether the collection stops at a selected dependency, which is still part of the graph
+     */
+    StoppingDependencySelector(Predicate<Dependency> last) {
+        this.last = last;
+        this.stopped = new AtomicBoolean();
+    }
+
+    @Override
+    public boolean selectDependency(Dependency dependency) {
+        if (stopped.get()) {
+            return false;
+        }
+        if (last.test(dependency)) {
+            stopped.set(true);
+        }
+        return true;
+    }
+
+    @Override
+    public DependencySelector deriveChildSelector(DependencyCollectionContext context) {
+        return this;
+    }
+}
@@ -0,0 +1,819 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * The class entries of a zip file, read from its central directory.
+ * <p>
+ * Unlike {@link java.util.jar.JarFile} this neither parses the manifest nor prepares signature verification, and
+ * only the names of entries ending with {@code .class} are decoded. The name suffix is checked on the raw bytes,
+ * all other entries are skipped without allocating anything. For every class entry the compression method, CRC-32,
+ * sizes and local header offset are available without opening an entry stream. Zip64 archives are supported.
+ * <p>
+ * Only the end of central directory record and the central directory itself are read into memory, so the size of the
+ * zip file doesn't matter. The start of an entry's content can be read with {@link #readContent(int, byte[])}, which
+ * reads the local header on demand and, for deflated entries, only inflates as much as requested. The whole content
+ * is available as a {@link ByteBuffer} from {@link #readContent(int, Function)}. The {@link Inflater}s and buffers
+ * are taken from a pool shared by all threads, so nothing is allocated per entry in the steady state.
+ * The manifest is the only other entry which is located, see {@link #readManifest()}.
+ * <p>
+ * The zip file is only open while content is read, so instances can be kept for many zip files without holding a file
+ * descriptor for each. Reads which overlap share the open file, and {@link #keepOpen()} keeps it open across many
+ * reads. Afterwards the file stays open among the {@value #MAX_IDLE_FILES} most recently read ones of all instances,
+ * until it is evicted or {@link #close()} is invoked. Instances are not thread-safe, except that different threads may
+ * get the names, sizes and CRC-32s of entries and read their content concurrently.
+ */
+final class ZipCentralDirectory implements Closeable {
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+    private static final int ZIP64_END_SIZE = 56;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    private static final int CENTRAL_SIZE = 46;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    private static final int LOCAL_SIZE = 30;
+
+    private static final int INPUT_CHUNK_SIZE = 512;
+
+    /** the readers not in use, the inflaters of readers which don't fit are ended right away */
+    private static final ResourcePool<EntryReader> READERS = new ResourcePool<>(
+            Runtime.getRuntime().availableProcessors() * 4, EntryReader::new, reader -> reader.inflater.end());
+
+    private static final byte[] CLASS_SUFFIX = ".class".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] MANIFEST_NAME = "META-INF/MANIFEST.MF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int MAX_MANIFEST_SIZE = 64 * 1024 * 1024;
+
+    /** the number of zip files kept open while nothing is read from them */
+    static final int MAX_IDLE_FILES = 16;
+
+    /** the instances whose file is open while nothing is read from it, least recently read first */
+    private static final Map<ZipCentralDirectory, Boolean> IDLE = new LinkedHashMap<>();
+
+    private final File file;
+
+    /** the open zip file, {@code null} while nothing is read */
+    private volatile FileChannel channel;
+
+    /** the number of reads in progress and of leases from {@link #keepOpen()}, the file is closed at zero */
+    private int users;
+
+    private long length;
+
+    /** the central directory, all name offsets are positions in this buffer */
+    private ByteBuffer buffer;
+
+    private int size;
+
+    private int[] nameOffsets;
+
+    private int[] nameLengths;
+
+    private int[] methods;
+
+    private int[] crcs;
+
+    private long[] compressedSizes;
+
+    private long[] uncompressedSizes;
+
+    private long[] localHeaderOffsets;
+
+    /** uncompressed size, compressed size and local header offset of the current central directory header */
+    private final long[] sizes = new long[3];
+
+    private int manifestMethod;
+
+    private long manifestCompressedSize;
+
+    private long manifestUncompressedSize;
+
+    private long manifestLocalHeaderOffset = -1;
+
+    /**
+     * The inflater and buffers to read an entry with.
+     */
+    private static final class EntryReader {
+        private final Inflater inflater = new Inflater(true);
+
+        /** the local header and the compressed content */
+        private final ByteBuffer input = ByteBuffer.allocate(INPUT_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        /** the whole uncompressed content, see {@link #readContent(int, Function)} */
+        private ByteBuffer content = ByteBuffer.allocate(8192);
+    }
+
+    private ZipCentralDirectory(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @param file the zip file
+     * @return the class entries of the zip file, which is closed again once they are read
+     * @throws IOException if the file can't be read or isn't a valid zip file
+     */
+    static ZipCentralDirectory readClassEntries(File file) throws IOException {
+        ZipCentralDirectory directory = new ZipCentralDirectory(file);
+        try (Closeable lease = directory.keepOpen()) {
+            directory.length = directory.channel.size();
+            directory.read();
+        }
+        return directory;
+    }
+
+    /**
+     * Keep the zip file open until the returned lease is closed, e.g. while the content of many entries is read.
+     *
+     * @return the lease, to be closed exactly once
+     * @throws IOException if the zip file can't be opened
+     */
+    Closeable keepOpen() throws IOException {
+        openFile();
+        return this::closeFile;
+    }
+
+    /**
+     * Close the zip file unless content is read from it right now. It is opened again when content is read.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            synchronized (IDLE) {
+                IDLE.remove(this);
+            }
+        }
+        closeIdleFile();
+    }
+
+    /**
+     * @return {@code true} if the zip file is open, because content is read or was read recently
+     */
+    synchronized boolean isFileOpen() {
+        return channel != null;
+    }
+
+    private synchronized void openFile() throws IOException {
+        if (users++ == 0) {
+            synchronized (IDLE) {
+                IDLE.remove(this);
+            }
+        }
+        if (channel == null || !channel.isOpen()) {
+            // not open yet, or closed because a reader was interrupted
+            try {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            } catch (IOException | RuntimeException e) {
+                channel = null;
+                users--;
+                throw e;
+            }
+        }
+    }
+
+    private void closeFile() {
+        ZipCentralDirectory evicted = null;
+        synchronized (this) {
+            if (--users > 0) {
+                return;
+            }
+            synchronized (IDLE) {
+                IDLE.put(this, Boolean.TRUE);
+                if (IDLE.size() > MAX_IDLE_FILES) {
+                    Iterator<ZipCentralDirectory> eldest = IDLE.keySet().iterator();
+                    evicted = eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        // closed without holding this lock, the lock of an instance is always taken before the lock of the idle ones
+        if (evicted != null) {
+            evicted.closeIdleFile();
+        }
+    }
+
+    private synchronized void closeIdleFile() {
+        if (users > 0 || channel == null) {
+            return;
+        }
+        synchronized (IDLE) {
+            if (IDLE.containsKey(this)) {
+                // read and idle again since it was evicted
+                return;
+            }
+        }
+        FileChannel open = channel;
+        channel = null;
+        try {
+            open.close();
+        } catch (IOException e) {
+            // nothing is read from the zip file anymore
+        }
+    }
+
+    /**
+     * @return the number of class entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of the class entry, in the order of the central directory
+     * @return the name of the entry
+     */
+    String getName(int index) {
+        int length = nameLengths[index];
+        byte[] name = new byte[length];
+        copy(nameOffsets[index], name, length);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param index the index of the class entry
+     * @return the name of the entry as a view of the central directory if it's ASCII, otherwise decoded
+     */
+    CharSequence getNameChars(int index) {
+        int offset = nameOffsets[index];
+        int length = nameLengths[index];
+        for (int i = offset; i < offset + length; i++) {
+            if (buffer.get(i) < 0) {
+                return getName(index);
+            }
+        }
+        return new AsciiName(buffer, offset, length);
+    }
+
+    /**
+     * @param index the index of the class entry
+     * @return the {@link ClassNameHashes#hash(ByteBuffer, int, int) hash} of the raw bytes of the name
+     */
+    long getNameHash(int index) {
+        return ClassNameHashes.hash(buffer, nameOffsets[index], nameLengths[index]);
+    }
+
+    /**
+     * @param index the index of the class entry
+     * @param name the buffer holding a UTF-8 encoded name
+     * @param offset the absolute position of the name in the buffer
+     * @param length the number of bytes of the name
+     * @return {@code true} if the entry has this name
+     */
+    boolean nameEquals(int index, ByteBuffer name, int offset, int length) {
+        if (nameLengths[index] != length) {
+            return false;
+        }
+        int nameOffset = nameOffsets[index];
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(nameOffset + i) != name.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the name of an entry like {@link DataOutput#writeUTF(String)} without decoding it.
+     *
+     * @param index the index of the class entry
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    void writeName(int index, DataOutput out) throws IOException {
+        out.writeShort(nameLengths[index]);
+        out.write(buffer.array(), buffer.arrayOffset() + nameOffsets[index], nameLengths[index]);
+    }
+
+    /**
+     * @param index the index of the class entry
+     * @return the compression method, e.g. {@link java.util.zip.ZipEntry#DEFLATED}
+     */
+    int getMethod(int index) {
+        return methods[index];
+    }
+
+    /**
+     * @param index the index of the class entry
+     * @return the CRC-32 of the uncompressed content
+     */
+    long getCrc(int index) {
+        return crcs[index] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param index the index of the class entry
+     * @return the compressed size of the content
+     */
+    long getCompressedSize(int index) {
+        return compressedSizes[index];
+    }
+
+    /**
+     * @param index the index of the class entry
+     * @return the uncompressed size of the content
+     */
+    long getSize(int index) {
+        return uncompressedSizes[index];
+    }
+
+    /**
+     * @param index the index of the class entry
+     * @return the position of the entry's local header in the file
+     */
+    long getLocalHeaderOffset(int index) {
+        return localHeaderOffsets[index];
+    }
+
+    /**
+     * Read the start of an entry's uncompressed content.
+     *
+     * @param index the index of the class entry
+     * @param target the array to fill
+     * @return the number of bytes read, less than the length of {@code target} only if the content is shorter
+     * @throws IOException if the entry is corrupt or uses an unsupported compression method
+     */
+    int readContent(int index, byte[] target) throws IOException {
+        try (Closeable lease = keepOpen()) {
+            return readContent(localHeaderOffsets[index], methods[index], compressedSizes[index], target, index);
+        }
+    }
+
+    /**
+     * Read the whole uncompressed content of an entry into a pooled buffer, without allocating anything in the
+     * steady state.
+     *
+     * @param index the index of the class entry
+     * @param function consumes the content, which is only valid while the function runs
+     * @param <T> the result of the function
+     * @return the result of the function
+     * @throws IOException if the entry is corrupt or uses an unsupported compression method
+     */
+    <T> T readContent(int index, Function<ByteBuffer, T> function) throws IOException {
+        if (uncompressedSizes[index] > Integer.MAX_VALUE - 8) {
+            throw new ZipException("entry too large: " + describe(index) + " in " + file);
+        }
+        int size = (int) uncompressedSizes[index];
+        EntryReader reader = READERS.acquire();
+        try (Closeable lease = keepOpen()) {
+            ByteBuffer content = reader.content;
+            if (content.capacity() < size) {
+                content = ByteBuffer.allocate(Math.max(size, content.capacity() * 2));
+                reader.content = content;
+            }
+            int length = readContent(
+                    reader, localHeaderOffsets[index], methods[index], compressedSizes[index], content, size, index);
+            content.position(0);
+            content.limit(length);
+            return function.apply(content);
+        } finally {
+            READERS.release(reader);
+        }
+    }
+
+    /**
+     * @return the content of the {@code META-INF/MANIFEST.MF} entry or {@code null} if there is none
+     * @throws IOException if the entry is corrupt or uses an unsupported compression method
+     */
+    byte[] readManifest() throws IOException {
+        if (manifestLocalHeaderOffset < 0) {
+            return null;
+        }
+        if (manifestUncompressedSize > MAX_MANIFEST_SIZE) {
+            throw new ZipException("manifest too large in " + file);
+        }
+        byte[] manifest = new byte[(int) manifestUncompressedSize];
+        try (Closeable lease = keepOpen()) {
+            readContent(manifestLocalHeaderOffset, manifestMethod, manifestCompressedSize, manifest, -1);
+        }
+        return manifest;
+    }
+
+    private int readContent(long localHeader, int method, long compressedSize, byte[] target, int index)
+            throws IOException {
+        EntryReader reader = READERS.acquire();
+        try {
+            if (method == ZipEntry.STORED && target.length <= reader.input.capacity()) {
+                // e.g. the header of a class file, read through the pooled buffer instead of wrapping the target
+                int length =
+                        readContent(reader, localHeader, method, compressedSize, reader.input, target.length, index);
+                System.arraycopy(reader.input.array(), 0, target, 0, length);
+                return length;
+            }
+            return readContent(
+                    reader, localHeader, method, compressedSize, ByteBuffer.wrap(target), target.length, index);
+        } finally {
+            READERS.release(reader);
+        }
+    }
+
+    /**
+     * @param target the buffer with the array to read the content into, from its start
+     * @param length the number of bytes to read at most
+     * @return the number of bytes read
+     */
+    private int readContent(
+            EntryReader reader,
+            long localHeader,
+            int method,
+            long compressedSize,
+            ByteBuffer target,
+            int length,
+            int index)
+            throws IOException {
+        long dataOffset = dataOffset(reader, localHeader, compressedSize, index);
+        switch (method) {
+            case ZipEntry.STORED:
+                int stored = (int) Math.min(length, compressedSize);
+                target.clear();
+                target.limit(stored);
+                if (!readFully(target, dataOffset)) {
+                    throw new ZipException(
+                            "invalid LOC header (bad entry size) for " + describe(index) + " in " + file);
+                }
+                return stored;
+            case ZipEntry.DEFLATED:
+                return inflate(reader, dataOffset, compressedSize, target.array(), length, index);
+            default:
+                throw new ZipException(
+                        "unsupported compression method " + method + " for " + describe(index) + " in " + file);
+        }
+    }
+
+    /**
+     * @return the offset of the entry's content after its local header
+     */
+    private long dataOffset(EntryReader reader, long localHeader, long compressedSize, int index) throws IOException {
+        ByteBuffer header = reader.input;
+        header.clear();
+        header.limit(LOCAL_SIZE);
+        if (localHeader < 0
+                || localHeader + LOCAL_SIZE > length
+                || !readFully(header, localHeader)
+                || header.getInt(0) != LOCAL_SIGNATURE) {
+            throw new ZipException("invalid LOC header (bad signature) for " + describe(index) + " in " + file);
+        }
+        long dataOffset = localHeader + LOCAL_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        if (dataOffset + compressedSize > length) {
+            throw new ZipException("invalid LOC header (bad entry size) for " + describe(index) + " in " + file);
+        }
+        return dataOffset;
+    }
+
+    private String describe(int index) {
+        return index < 0 ? "META-INF/MANIFEST.MF" : getName(index);
+    }
+
+    private int inflate(EntryReader reader, long dataOffset, long compressedSize, byte[] target, int length, int index)
+            throws IOException {
+        Inflater inflater = reader.inflater;
+        ByteBuffer input = reader.input;
+        long position = dataOffset;
+        long remaining = compressedSize;
+        int read = 0;
+        try {
+            while (read < length) {
+                if (inflater.needsInput()) {
+                    if (remaining == 0) {
+                        break;
+                    }
+                    int chunk = (int) Math.min(input.capacity(), remaining);
+                    input.clear();
+                    input.limit(chunk);
+                    if (!readFully(input, position)) {
+                        break;
+                    }
+                    position += chunk;
+                    remaining -= chunk;
+                    inflater.setInput(input.array(), 0, chunk);
+                }
+                int inflated = inflater.inflate(target, read, length - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+        } catch (DataFormatException e) {
+            ZipException exception = new ZipException("invalid deflated data for " + describe(index) + " in " + file);
+            exception.initCause(e);
+            throw exception;
+        } finally {
+            inflater.reset();
+        }
+        return read;
+    }
+
+    /**
+     * Fill the remaining space of a buffer from the given position of the zip file, without moving the position of
+     * the channel, so different threads may read at the same time. The file must be kept open by the caller.
+     *
+     * @return {@code false} if the end of the zip file was reached before
+     */
+    private boolean readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private void copy(int position, byte[] target, int length) {
+        for (int i = 0; i < length; i++) {
+            target[i] = buffer.get(position + i);
+        }
+    }
+
+    private void read() throws IOException {
+        if (length < END_SIZE) {
+            throw new ZipException("zip END header not found in " + file);
+        }
+        // the end record, the archive comment and the zip64 locator in front of the end record
+        int tailLength = (int) Math.min(length, END_SIZE + MAX_COMMENT_SIZE + ZIP64_LOCATOR_SIZE);
+        long tailStart = length - tailLength;
+        buffer = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(buffer, tailStart)) {
+            throw new ZipException("zip END header not found in " + file);
+        }
+        int end = findEnd(tailStart);
+        long entries = u16(end + 10);
+        long directorySize = u32(end + 12);
+        long directoryOffset = u32(end + 16);
+        long directoryEnd = tailStart + end;
+
+        int locator = end - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0 && buffer.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+            long zip64End = buffer.getLong(locator + 8);
+            ByteBuffer record = ByteBuffer.allocate(ZIP64_END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (zip64End < 0
+                    || zip64End + ZIP64_END_SIZE > tailStart + locator
+                    || !readFully(record, zip64End)
+                    || record.getInt(0) != ZIP64_END_SIGNATURE) {
+                throw new ZipException("invalid zip64 END header in " + file);
+            }
+            entries = record.getLong(32);
+            directorySize = record.getLong(40);
+            directoryOffset = record.getLong(48);
+            directoryEnd = zip64End;
+        }
+
+        long directoryStart = directoryEnd - directorySize;
+        if (directorySize < 0 || directoryOffset < 0 || directoryStart < directoryOffset) {
+            throw new ZipException("invalid END header (bad central directory offset) in " + file);
+        }
+        if (directorySize > Integer.MAX_VALUE - 8) {
+            throw new ZipException("central directory too large in " + file);
+        }
+        // data prepended to the archive, e.g. a launcher script, shifts all offsets
+        long base = directoryStart - directoryOffset;
+
+        buffer = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(buffer, directoryStart)) {
+            throw new ZipException("invalid END header (bad central directory size) in " + file);
+        }
+
+        int capacity = (int) Math.min(entries, directorySize / CENTRAL_SIZE);
+        allocate(capacity);
+
+        int position = 0;
+        int limit = (int) directorySize;
+        while (position < limit) {
+            if (position + CENTRAL_SIZE > limit || buffer.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new ZipException("invalid CEN header (bad signature) in " + file);
+            }
+            int nameLength = u16(position + 28);
+            int extraLength = u16(position + 30);
+            int commentLength = u16(position + 32);
+            int nameOffset = position + CENTRAL_SIZE;
+            long next = (long) nameOffset + nameLength + extraLength + commentLength;
+            if (next > limit) {
+                throw new ZipException("invalid CEN header (bad header size) in " + file);
+            }
+            if (endsWithClassSuffix(nameOffset, nameLength)) {
+                readSizes(position, nameOffset + nameLength, extraLength);
+                long uncompressedSize = sizes[0];
+                long compressedSize = sizes[1];
+                long localHeaderOffset = sizes[2];
+                if (size == nameOffsets.length) {
+                    allocate(Math.max(16, size * 2));
+                }
+                nameOffsets[size] = nameOffset;
+                nameLengths[size] = nameLength;
+                methods[size] = u16(position + 10);
+                crcs[size] = buffer.getInt(position + 16);
+                compressedSizes[size] = compressedSize;
+                uncompressedSizes[size] = uncompressedSize;
+                localHeaderOffsets[size] = base + localHeaderOffset;
+                size++;
+            } else if (nameLength == MANIFEST_NAME.length && equalsName(nameOffset, MANIFEST_NAME)) {
+                readSizes(position, nameOffset + nameLength, extraLength);
+                manifestMethod = u16(position + 10);
+                manifestUncompressedSize = sizes[0];
+                manifestCompressedSize = sizes[1];
+                manifestLocalHeaderOffset = base + sizes[2];
+            }
+            position = (int) next;
+        }
+    }
+
+    /**
+     * Read the sizes and the local header offset of a central directory header into {@link #sizes}, taking the zip64
+     * extra field into account.
+     */
+    private void readSizes(int position, int extra, int extraLength) {
+        long uncompressedSize = u32(position + 24);
+        long compressedSize = u32(position + 20);
+        long localHeaderOffset = u32(position + 42);
+        if (compressedSize == ZIP64_MAGIC || uncompressedSize == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = u16(extra);
+                int length = u16(extra + 2);
+                int value = extra + 4;
+                if (id == ZIP64_EXTRA_ID) {
+                    int valueEnd = Math.min(value + length, extraEnd);
+                    if (uncompressedSize == ZIP64_MAGIC && value + 8 <= valueEnd) {
+                        uncompressedSize = buffer.getLong(value);
+                        value += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC && value + 8 <= valueEnd) {
+                        compressedSize = buffer.getLong(value);
+                        value += 8;
+                    }
+                    if (localHeaderOffset == ZIP64_MAGIC && value + 8 <= valueEnd) {
+                        localHeaderOffset = buffer.getLong(value);
+                    }
+                    break;
+                }
+                extra = value + length;
+            }
+        }
+        sizes[0] = uncompressedSize;
+        sizes[1] = compressedSize;
+        sizes[2] = localHeaderOffset;
+    }
+
+    /**
+     * @param tailStart the position of the {@link #buffer} with the end of the file
+     * @return the position of the end of central directory record in the buffer, searched backwards to skip the
+     *         archive comment
+     */
+    private int findEnd(long tailStart) throws ZipException {
+        int last = buffer.limit() - END_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_SIZE);
+        for (int position = last; position >= first; position--) {
+            if (buffer.getInt(position) == END_SIGNATURE) {
+                long directorySize = u32(position + 12);
+                long directoryOffset = u32(position + 16);
+                if (directorySize == ZIP64_MAGIC
+                        || directoryOffset == ZIP64_MAGIC
+                        || directoryOffset + directorySize <= tailStart + position) {
+                    return position;
+                }
+            }
+        }
+        throw new ZipException("zip END header not found in " + file);
+    }
+
+    private boolean equalsName(int nameOffset, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (buffer.get(nameOffset + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean endsWithClassSuffix(int nameOffset, int nameLength) {
+        if (nameLength <= CLASS_SUFFIX.length) {
+            return false;
+        }
+        int suffixOffset = nameOffset + nameLength - CLASS_SUFFIX.length;
+        for (int i = 0; i < CLASS_SUFFIX.length; i++) {
+            if (buffer.get(suffixOffset + i) != CLASS_SUFFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void allocate(int capacity) {
+        nameOffsets = nameOffsets == null ? new int[capacity] : Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = nameLengths == null ? new int[capacity] : Arrays.copyOf(nameLengths, capacity);
+        methods = methods == null ? new int[capacity] : Arrays.copyOf(methods, capacity);
+        crcs = crcs == null ? new int[capacity] : Arrays.copyOf(crcs, capacity);
+        compressedSizes = compressedSizes == null ? new long[capacity] : Arrays.copyOf(compressedSizes, capacity);
+        uncompressedSizes = uncompressedSizes == null ? new long[capacity] : Arrays.copyOf(uncompressedSizes, capacity);
+        localHeaderOffsets =
+                localHeaderOffsets == null ? new long[capacity] : Arrays.copyOf(localHeaderOffsets, capacity);
+    }
+
+    private int u16(int position) {
+        return buffer.getShort(position) & 0xFFFF;
+    }
+
+    private long u32(int position) {
+        return buffer.getInt(position) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * An ASCII name in the central directory, which is only copied by {@link #toString()}.
+     */
+    private static final class AsciiName implements CharSequence {
+        private final ByteBuffer buffer;
+
+        private final int offset;
+
+        private final int length;
+
+        AsciiName(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return (char) buffer.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException(start + ", " + end);
+            }
+            return new AsciiName(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] name = new byte[length];
+            for (int i = 0; i < length; i++) {
+                name[i] = buffer.get(offset + i);
+            }
+            return new String(name, StandardCharsets.US_ASCII);
+        }
+    }
+}
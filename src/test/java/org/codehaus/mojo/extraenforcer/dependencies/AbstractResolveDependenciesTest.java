@@ -0,0 +1,332 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+import org.apache.maven.enforcer.rule.api.EnforcerRuleError;
+import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.util.graph.traverser.StaticDependencyTraverser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AbstractResolveDependenciesTest {
+
+    @TempDir
+    private File tempFolder;
+
+    private final RepositorySystem repositorySystem = mock(RepositorySystem.class);
+
+    private final MavenProject project = new MavenProject();
+
+    private final MavenSession session = mock(MavenSession.class);
+
+    private final ArtifactScanIndex scanIndex = new ArtifactScanIndex();
+
+    private final Set<Artifact> checked = new HashSet<>();
+
+    private AbstractResolveDependencies rule;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(session.getCurrentProject()).thenReturn(project);
+        when(session.getRepositorySession()).thenReturn(new DefaultRepositorySystemSession());
+        when(repositorySystem.collectDependencies(any(), any()))
+                .thenThrow(new DependencyCollectionException(new CollectResult(new CollectRequest()), "collected"));
+
+        rule = newRule();
+        rule.setReuseProjectArtifacts(true);
+    }
+
+    @Test
+    void reusesResolvedProjectArtifacts() throws Exception {
+        Artifact direct = newArtifact("direct", "project", "direct");
+        Artifact transitive = newArtifact("transitive", "project", "direct", "transitive");
+        project.setArtifacts(new HashSet<>(Arrays.asList(direct, transitive)));
+        project.setDependencies(Collections.singletonList(newDependency("direct")));
+
+        rule.execute();
+
+        assertEquals(new HashSet<>(Arrays.asList(direct, transitive)), checked);
+        verifyNoInteractions(repositorySystem);
+    }
+
+    @Test
+    void reusesDirectProjectArtifactsOnly() throws Exception {
+        Artifact direct = newArtifact("direct", "project", "direct");
+        Artifact transitive = newArtifact("transitive", "project", "direct", "transitive");
+        project.setArtifacts(new HashSet<>(Arrays.asList(direct, transitive)));
+        project.setDependencies(Collections.singletonList(newDependency("direct")));
+        rule.setSearchTransitive(false);
+
+        rule.execute();
+
+        assertEquals(Collections.singleton(direct), checked);
+        verifyNoInteractions(repositorySystem);
+    }
+
+    @Test
+    void collectsDependenciesIfADirectDependencyIsMissing() {
+        project.setArtifacts(Collections.singleton(newArtifact("direct", "project", "direct")));
+        project.setDependencies(Arrays.asList(newDependency("direct"), newDependency("missing")));
+
+        assertThrows(EnforcerRuleError.class, rule::execute);
+    }
+
+    @Test
+    void collectsDependenciesIfAnArtifactIsNotResolved() {
+        Artifact direct = newArtifact("direct", "project", "direct");
+        direct.setFile(null);
+        project.setArtifacts(Collections.singleton(direct));
+        project.setDependencies(Collections.singletonList(newDependency("direct")));
+
+        assertThrows(EnforcerRuleError.class, rule::execute);
+    }
+
+    @Test
+    void rulesShareTheCollectedAndResolvedDependencies() throws Exception {
+        project.setGroupId("groupId");
+        project.setArtifactId("project");
+        project.setVersion("1.0");
+        project.setDependencies(Collections.singletonList(newDependency("direct")));
+        DefaultDependencyNode root = new DefaultDependencyNode((org.eclipse.aether.graph.Dependency) null);
+        root.setChildren(Collections.singletonList(newNode("direct")));
+        reset(repositorySystem);
+        when(repositorySystem.collectDependencies(any(), any()))
+                .thenReturn(new CollectResult(new CollectRequest()).setRoot(root));
+        when(repositorySystem.resolveArtifacts(any(), any())).thenAnswer(invocation -> {
+            List<ArtifactResult> results = new ArrayList<>();
+            for (ArtifactRequest request : invocation.<List<ArtifactRequest>>getArgument(1)) {
+                results.add(new ArtifactResult(request)
+                        .setArtifact(
+                                request.getDependencyNode().getArtifact().setFile(new File(tempFolder, "direct.jar"))));
+            }
+            return results;
+        });
+
+        newRule().execute();
+        newRule().execute();
+        AbstractResolveDependencies directOnly = newRule();
+        directOnly.setSearchTransitive(false);
+        directOnly.execute();
+
+        assertEquals(1, checked.size());
+        verify(repositorySystem, times(1)).collectDependencies(any(), any());
+        verify(repositorySystem, times(2)).resolveArtifacts(any(), any());
+    }
+
+    @Test
+    void circularDependencyIsFoundWithoutResolvingArtifacts() throws Exception {
+        project.setGroupId("groupId");
+        project.setArtifactId("project");
+        project.setVersion("1.0");
+        project.setDependencies(Arrays.asList(newDependency("direct"), newDependency("other")));
+        DefaultDependencyNode root = new DefaultDependencyNode((org.eclipse.aether.graph.Dependency) null);
+        root.setChildren(Arrays.asList(
+                newNode("direct", newNode("project", newNode("transitive"))), newNode("other", newNode("deep"))));
+        reset(repositorySystem);
+        when(repositorySystem.collectDependencies(any(), any())).thenAnswer(invocation -> {
+            // the collection itself stops once the project has been selected
+            DependencySelector selector =
+                    invocation.<RepositorySystemSession>getArgument(0).getDependencySelector();
+            assertTrue(selector.selectDependency(newNode("direct").getDependency()));
+            assertTrue(selector.selectDependency(newNode("project").getDependency()));
+            assertFalse(selector.selectDependency(newNode("other").getDependency()));
+            return new CollectResult(new CollectRequest()).setRoot(root);
+        });
+        Set<String> checkedIds = new HashSet<>();
+        BanCircularDependencies rule = new BanCircularDependencies(session, repositorySystem, scanIndex) {
+            @Override
+            protected void handleArtifacts(Set<Artifact> artifacts) throws EnforcerRuleException {
+                artifacts.forEach(artifact -> checkedIds.add(artifact.getArtifactId()));
+                super.handleArtifacts(artifacts);
+            }
+        };
+        rule.setLog(mock(EnforcerLogger.class));
+
+        assertThrows(EnforcerRuleException.class, rule::execute);
+
+        assertEquals(new HashSet<>(Arrays.asList("direct", "project")), checkedIds);
+        verify(repositorySystem, never()).resolveArtifacts(any(), any());
+    }
+
+    private static DefaultDependencyNode newNode(String artifactId, DefaultDependencyNode... children) {
+        DefaultDependencyNode node = new DefaultDependencyNode(new org.eclipse.aether.graph.Dependency(
+                new org.eclipse.aether.artifact.DefaultArtifact("groupId:" + artifactId + ":1.0"), "compile"));
+        node.setChildren(new ArrayList<>(Arrays.asList(children)));
+        return node;
+    }
+
+    @Test
+    void prunesFilteredDependenciesWhileCollecting() throws Exception {
+        // the version range has to be collected, even if only direct dependencies are checked
+        Dependency ranged = newDependency("direct");
+        ranged.setVersion("[1.0,2.0)");
+        project.setDependencies(Collections.singletonList(ranged));
+        reset(repositorySystem);
+        when(repositorySystem.collectDependencies(any(), any())).thenAnswer(invocation -> {
+            RepositorySystemSession repositorySession = invocation.getArgument(0);
+            // the transitive dependencies are still traversed, they take part in the conflict resolution
+            assertFalse(repositorySession.getDependencyTraverser() instanceof StaticDependencyTraverser);
+            assertNotNull(repositorySession.getDependencySelector());
+            return new CollectResult(new CollectRequest())
+                    .setRoot(new DefaultDependencyNode((org.eclipse.aether.graph.Dependency) null));
+        });
+        when(repositorySystem.resolveArtifacts(any(), any())).thenReturn(Collections.emptyList());
+        rule.setReuseProjectArtifacts(false);
+        rule.setPruneFilteredDependencies(true);
+        rule.setIgnoredScopes(Collections.singletonList("test"));
+        rule.setSearchTransitive(false);
+
+        rule.execute();
+
+        verify(repositorySystem).collectDependencies(any(), any());
+    }
+
+    @Test
+    void directDependenciesAreResolvedWithoutCollecting() throws Exception {
+        project.setDependencies(Arrays.asList(newDependency("direct"), newDependency("other")));
+        reset(repositorySystem);
+        List<String> requested = new ArrayList<>();
+        when(repositorySystem.resolveArtifacts(any(), any())).thenAnswer(invocation -> {
+            List<ArtifactResult> results = new ArrayList<>();
+            for (ArtifactRequest request : invocation.<List<ArtifactRequest>>getArgument(1)) {
+                org.eclipse.aether.artifact.Artifact artifact =
+                        request.getDependencyNode().getArtifact();
+                requested.add(artifact.getArtifactId() + ":" + artifact.getVersion());
+                results.add(new ArtifactResult(request)
+                        .setArtifact(artifact.setFile(new File(tempFolder, artifact.getArtifactId() + ".jar"))));
+            }
+            return results;
+        });
+        rule.setReuseProjectArtifacts(false);
+        rule.setSearchTransitive(false);
+
+        rule.execute();
+
+        assertEquals(Arrays.asList("direct:1.0", "other:1.0"), requested);
+        assertEquals(2, checked.size());
+        verify(repositorySystem, never()).collectDependencies(any(), any());
+    }
+
+    @Test
+    void artifactsExcludedByTheRuleAreNotResolved() throws Exception {
+        project.setDependencies(Arrays.asList(newDependency("direct"), newDependency("excluded")));
+        DefaultDependencyNode root = new DefaultDependencyNode((org.eclipse.aether.graph.Dependency) null);
+        root.setChildren(Arrays.asList(newNode("direct"), newNode("excluded")));
+        reset(repositorySystem);
+        when(repositorySystem.collectDependencies(any(), any()))
+                .thenReturn(new CollectResult(new CollectRequest()).setRoot(root));
+        List<String> requested = new ArrayList<>();
+        when(repositorySystem.resolveArtifacts(any(), any())).thenAnswer(invocation -> {
+            for (ArtifactRequest request : invocation.<List<ArtifactRequest>>getArgument(1)) {
+                requested.add(request.getDependencyNode().getArtifact().getArtifactId());
+            }
+            return Collections.emptyList();
+        });
+        AbstractResolveDependencies filtering = new AbstractResolveDependencies(session, repositorySystem, scanIndex) {
+            @Override
+            protected ArtifactFilter getArtifactFilter() {
+                return artifact -> !artifact.getArtifactId().equals("excluded");
+            }
+
+            @Override
+            protected void handleArtifacts(Set<Artifact> artifacts) {}
+        };
+        filtering.setLog(mock(EnforcerLogger.class));
+
+        filtering.execute();
+
+        assertEquals(Collections.singletonList("direct"), requested);
+    }
+
+    private AbstractResolveDependencies newRule() {
+        AbstractResolveDependencies rule = new AbstractResolveDependencies(session, repositorySystem, scanIndex) {
+            @Override
+            protected void handleArtifacts(Set<Artifact> artifacts) {
+                checked.addAll(artifacts);
+            }
+        };
+        rule.setLog(mock(EnforcerLogger.class));
+        return rule;
+    }
+
+    private Artifact newArtifact(String artifactId, String... trail) {
+        Artifact artifact = new DefaultArtifact(
+                "groupId",
+                artifactId,
+                VersionRange.createFromVersion("1.0"),
+                "compile",
+                "jar",
+                null,
+                new DefaultArtifactHandler("jar"));
+        artifact.setFile(new File(tempFolder, artifactId + ".jar"));
+        artifact.setDependencyTrail(Arrays.asList(trail));
+        return artifact;
+    }
+
+    private static Dependency newDependency(String artifactId) {
+        Dependency dependency = new Dependency();
+        dependency.setGroupId("groupId");
+        dependency.setArtifactId(artifactId);
+        dependency.setVersion("1.0");
+        return dependency;
+    }
+}
@@ -43,6 +43,11 @@ public class ArtifactBuilder {
         return new ArtifactBuilder();
     }
 
+    public ArtifactBuilder withArtifactId(String artifactId) {
+        this.artifactId = artifactId;
+        return this;
+    }
+
     public ArtifactBuilder withVersion(String version) {
         versionRange = VersionRange.createFromVersion(version);
         return this;
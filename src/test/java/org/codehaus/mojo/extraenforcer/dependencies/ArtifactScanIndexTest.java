@@ -0,0 +1,147 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.maven.artifact.Artifact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.classBytes;
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.newJar;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArtifactScanIndexTest {
+
+    @TempDir
+    private File tempFolder;
+
+    private final ArtifactScanIndex index = new ArtifactScanIndex();
+
+    @Test
+    void listsClassEntriesInJarOrder() throws Exception {
+        File jar = newJar().withClass("b/B.class", 52)
+                .withEntry("a/", new byte[0])
+                .withEntry("a/readme.txt", "text".getBytes())
+                .withClass("a/A.class", 55)
+                .writeTo(new File(tempFolder, "test.jar"));
+
+        JarContents contents = index.getJarContents(jar);
+
+        assertEquals(Arrays.asList("b/B.class", "a/A.class"), contents.getClassEntryNames());
+    }
+
+    @Test
+    void readsMultiReleaseAttribute() throws Exception {
+        File plain = newJar().withEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes())
+                .withClass("A.class", 52)
+                .writeTo(new File(tempFolder, "plain.jar"));
+        File multiRelease = newJar().withEntry(
+                        "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\nMulti-Release: true\n".getBytes())
+                .withClass("A.class", 52)
+                .stored()
+                .writeTo(new File(tempFolder, "mr.jar"));
+        File noManifest = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "none.jar"));
+
+        assertFalse(index.getJarContents(plain).isMultiRelease());
+        assertTrue(index.getJarContents(multiRelease).isMultiRelease());
+        assertFalse(index.getJarContents(noManifest).isMultiRelease());
+    }
+
+    @Test
+    void readsClassFileVersions() throws Exception {
+        File jar = newJar().withEntry("A.class", classBytes(52, 3, "A"))
+                .withEntry("B.class", classBytes(65, 0, "B"))
+                .withEntry("Short.class", new byte[] {(byte) 0xCA, (byte) 0xFE})
+                .writeTo(new File(tempFolder, "test.jar"));
+
+        JarContents contents = index.getJarContents(jar);
+
+        assertEquals(52, contents.getMajorVersion(0));
+        assertEquals(3, contents.getMinorVersion(0));
+        assertEquals(65, contents.getMajorVersion(1));
+        assertEquals(0, contents.getMinorVersion(1));
+        assertEquals(JarContents.UNKNOWN_VERSION, contents.getMajorVersion(2));
+    }
+
+    @Test
+    void computesContentHashes() throws Exception {
+        byte[] content = classBytes(52, 0, "A");
+        File jar = newJar().withEntry("A.class", content).writeTo(new File(tempFolder, "test.jar"));
+
+        assertEquals(DigestUtils.sha256Hex(content), index.getJarContents(jar).getHash(0));
+    }
+
+    @Test
+    void reusesContentsOfUnchangedJar() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+
+        assertSame(index.getJarContents(jar), index.getJarContents(jar));
+    }
+
+    @Test
+    void rereadsModifiedJar() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+        JarContents first = index.getJarContents(jar);
+
+        newJar().withClass("A.class", 52).withClass("B.class", 52).writeTo(jar);
+        jar.setLastModified(jar.lastModified() + 2000);
+        JarContents second = index.getJarContents(jar);
+
+        assertNotSame(first, second);
+        assertEquals(Arrays.asList("A.class", "B.class"), second.getClassEntryNames());
+    }
+
+    @Test
+    void dropsLeastRecentlyUsedJars() throws Exception {
+        ArtifactScanIndex bounded = new ArtifactScanIndex(2, 2);
+        File a = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "a.jar"));
+        File b = newJar().withClass("B.class", 52).writeTo(new File(tempFolder, "b.jar"));
+        File c = newJar().withClass("C.class", 52).writeTo(new File(tempFolder, "c.jar"));
+        JarContents first = bounded.getJarContents(a);
+        JarContents second = bounded.getJarContents(b);
+
+        bounded.getJarContents(a);
+        bounded.getJarContents(c);
+
+        assertEquals(2, bounded.getJarCount());
+        assertSame(first, bounded.getJarContents(a));
+        assertNotSame(second, bounded.getJarContents(b));
+    }
+
+    @Test
+    void dropsLeastRecentlyUsedDependencies() {
+        ArtifactScanIndex bounded = new ArtifactScanIndex(2, 2);
+        Set<Artifact> first = bounded.getDependencies(Arrays.asList("a"), HashSet::new);
+        bounded.getDependencies(Arrays.asList("b"), HashSet::new);
+        bounded.getDependencies(Arrays.asList("c"), HashSet::new);
+
+        assertNotSame(first, bounded.getDependencies(Arrays.asList("a"), HashSet::new));
+    }
+}
@@ -0,0 +1,293 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.classBytes;
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.newJar;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+class BanDuplicateClassesTest {
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void sortBasedDetectionReportsTheSameDuplicates() throws Exception {
+        Set<Artifact> artifacts = newArtifacts();
+        for (boolean findAllDuplicates : new boolean[] {false, true}) {
+            BanDuplicateClasses mapBased = newRule(findAllDuplicates, false);
+            BanDuplicateClasses sortBased = newRule(findAllDuplicates, true);
+
+            EnforcerRuleException expected =
+                    assertThrows(EnforcerRuleException.class, () -> mapBased.handleArtifacts(artifacts));
+            EnforcerRuleException actual =
+                    assertThrows(EnforcerRuleException.class, () -> sortBased.handleArtifacts(artifacts));
+
+            // the groups are listed in the order they were found, which differs between the detections
+            assertEquals(groupsOf(expected.getMessage()), groupsOf(actual.getMessage()));
+        }
+    }
+
+    private static List<String> groupsOf(String message) {
+        List<String> groups = new ArrayList<>();
+        for (String group : message.split("\n\n")) {
+            groups.add(group.trim());
+        }
+        Collections.sort(groups);
+        return groups;
+    }
+
+    @Test
+    void memoryBudgetReportsTheSameDuplicates() throws Exception {
+        Set<Artifact> artifacts = newArtifacts();
+        for (boolean findAllDuplicates : new boolean[] {false, true}) {
+            BanDuplicateClasses mapBased = newRule(findAllDuplicates, false);
+            BanDuplicateClasses budgeted = newRule(findAllDuplicates, false);
+            budgeted.setClassTableMemoryBudget(1);
+            budgeted.setSpillDirectory(new File(tempFolder, "spill"));
+
+            EnforcerRuleException expected =
+                    assertThrows(EnforcerRuleException.class, () -> mapBased.handleArtifacts(artifacts));
+            EnforcerRuleException actual =
+                    assertThrows(EnforcerRuleException.class, () -> budgeted.handleArtifacts(artifacts));
+
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+    }
+
+    @Test
+    void memoryBudgetKeepsNoJarsInTheSessionIndex() throws Exception {
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (int i = 0; i < 200; i++) {
+            JarFileHelper jar = newJar();
+            for (int j = 0; j < 50; j++) {
+                jar.withClass("p" + i + "/C" + j + ".class", 52);
+            }
+            if (i == 0 || i == 199) {
+                jar.withClass("shared/S.class", 52);
+            }
+            artifacts.add(newArtifact("a" + i, jar));
+        }
+        ArtifactScanIndex scanIndex = new ArtifactScanIndex();
+        BanDuplicateClasses rule = new BanDuplicateClasses(null, null, scanIndex);
+        rule.setLog(mock(EnforcerLogger.class));
+        rule.setFindAllDuplicates(true);
+        rule.setClassTableMemoryBudget(1);
+        rule.setSpillDirectory(new File(tempFolder, "spill"));
+
+        EnforcerRuleException actual = assertThrows(EnforcerRuleException.class, () -> rule.handleArtifacts(artifacts));
+
+        assertTrue(actual.getMessage().contains("shared/S.class"));
+        assertFalse(actual.getMessage().contains("p0/C0.class"));
+        // only the class name hashes are kept for the artifacts, nothing of the jars remains in the index
+        assertEquals(0, scanIndex.getJarCount());
+    }
+
+    @Test
+    void keepsOnlyAFewJarFilesOpen() throws Exception {
+        File openFiles = new File("/proc/self/fd");
+        assumeTrue(openFiles.isDirectory());
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (int i = 0; i < 200; i++) {
+            artifacts.add(newArtifact(
+                    "a" + i, newJar().withClass("p" + i + "/C.class", 52).withClass("shared/S.class", 52)));
+        }
+        BanDuplicateClasses rule = newRule(true, false);
+        rule.setIgnoreWhenIdentical(true);
+        int before = openFiles.list().length;
+
+        rule.handleArtifacts(artifacts);
+
+        // the identical classes were read from every jar
+        assertTrue(openFiles.list().length - before <= ZipCentralDirectory.MAX_IDLE_FILES);
+    }
+
+    @Test
+    void contentHashAlgorithmsReportTheSameDuplicates() throws Exception {
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        artifacts.add(newArtifact("a", newJar().withClass("a/A.class", 52).withClass("shared/S.class", 52)));
+        artifacts.add(newArtifact("b", newJar().withClass("a/A.class", 52).withClass("shared/S.class", 53)));
+
+        BanDuplicateClasses sha256 = newRule(true, false);
+        sha256.setIgnoreWhenIdentical(true);
+        BanDuplicateClasses murmur3 = newRule(true, false);
+        murmur3.setIgnoreWhenIdentical(true);
+        murmur3.setContentHash(ContentHashAlgorithm.MURMUR3_128);
+
+        EnforcerRuleException expected =
+                assertThrows(EnforcerRuleException.class, () -> sha256.handleArtifacts(artifacts));
+        EnforcerRuleException actual =
+                assertThrows(EnforcerRuleException.class, () -> murmur3.handleArtifacts(artifacts));
+
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertFalse(actual.getMessage().contains("a/A.class"));
+    }
+
+    @Test
+    void directoryClassesAreComparedWithJarClasses() throws Exception {
+        File classes = new File(tempFolder, "classes");
+        writeFile(classes, "a/A.class", classBytes(52, 0, "a/A.class"));
+        writeFile(classes, "shared/nested/S.class", classBytes(52, 0, "differs in size"));
+        writeFile(classes, "README.txt", new byte[] {1});
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        artifacts.add(ArtifactBuilder.newBuilder()
+                .withArtifactId("classes")
+                .withType("jar")
+                .withFileOrDirectory(classes)
+                .build());
+        artifacts.add(newArtifact("a", newJar().withClass("a/A.class", 52).withClass("shared/nested/S.class", 52)));
+
+        BanDuplicateClasses rule = newRule(true, false);
+        rule.setIgnoreWhenIdentical(true);
+
+        EnforcerRuleException actual = assertThrows(EnforcerRuleException.class, () -> rule.handleArtifacts(artifacts));
+
+        assertTrue(actual.getMessage().contains("shared/nested/S.class"));
+        assertFalse(actual.getMessage().contains("a/A.class"));
+        assertFalse(actual.getMessage().contains("README.txt"));
+    }
+
+    @Test
+    void reportListsAllDuplicatesWhileTheMessageIsBounded() throws Exception {
+        Set<Artifact> artifacts = newArtifacts();
+        BanDuplicateClasses legacy = newRule(true, false);
+        legacy.setMaxReportedGroups(0);
+        BanDuplicateClasses bounded = newRule(true, false);
+        File report = new File(tempFolder, "report/duplicate-classes.jsonl");
+        bounded.setReportFile(report);
+        bounded.setMaxReportedGroups(1);
+
+        EnforcerRuleException expected =
+                assertThrows(EnforcerRuleException.class, () -> legacy.handleArtifacts(artifacts));
+        EnforcerRuleException actual =
+                assertThrows(EnforcerRuleException.class, () -> bounded.handleArtifacts(artifacts));
+
+        assertTrue(expected.getMessage().contains("a/A.class"));
+        assertTrue(expected.getMessage().contains("shared/S.class"));
+        // only one of the two groups of artifacts with a single duplicate class is listed
+        assertTrue(
+                actual.getMessage().contains("a/A.class") != actual.getMessage().contains("shared/S.class"));
+        assertTrue(actual.getMessage().contains("And 1 duplicate classes in 1 more groups of artifacts"));
+        assertTrue(actual.getMessage().endsWith("All 2 duplicate classes are listed in " + report));
+
+        List<String> lines = Files.readAllLines(report.toPath());
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains("{\"class\":\"shared/S.class\",\"artifacts\":" + jsonArray(artifacts, "a", "c")
+                + ",\"identicalIn\":[]}"));
+    }
+
+    @Test
+    void ignoresAllClassesUnderAnIgnoredPrefix() throws Exception {
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (String artifactId : new String[] {"a", "b"}) {
+            artifacts.add(newArtifact(
+                    artifactId,
+                    newJar().withClass("org/shaded/A.class", 52)
+                            .withClass("org/shaded/b/B.class", 52)
+                            .withClass("org/shade/C.class", 52)
+                            .withClass("org/shaded/D.class", 52)));
+        }
+        BanDuplicateClasses rule = newRule(true, false);
+        rule.setIgnoreClasses(new String[] {"org.shaded.*"});
+
+        EnforcerRuleException actual = assertThrows(EnforcerRuleException.class, () -> rule.handleArtifacts(artifacts));
+
+        assertTrue(actual.getMessage().contains("org/shade/C.class"));
+        assertFalse(actual.getMessage().contains("org/shaded/"));
+    }
+
+    @Test
+    void sortBasedDetectionPassesWithoutDuplicates() throws Exception {
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        artifacts.add(newArtifact("a", newJar().withClass("a/A.class", 52).withClass("module-info.class", 53)));
+        artifacts.add(newArtifact("b", newJar().withClass("b/B.class", 52).withClass("module-info.class", 53)));
+
+        newRule(true, true).handleArtifacts(artifacts);
+    }
+
+    private static BanDuplicateClasses newRule(boolean findAllDuplicates, boolean sortBasedDetection) {
+        BanDuplicateClasses rule = new BanDuplicateClasses(null, null, new ArtifactScanIndex());
+        rule.setLog(mock(EnforcerLogger.class));
+        rule.setFindAllDuplicates(findAllDuplicates);
+        rule.setSortBasedDetection(sortBasedDetection);
+        return rule;
+    }
+
+    private Set<Artifact> newArtifacts() throws IOException {
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        artifacts.add(newArtifact("a", newJar().withClass("a/A.class", 52).withClass("shared/S.class", 52)));
+        artifacts.add(newArtifact("b", newJar().withClass("b/B.class", 52).withClass("a/A.class", 52)));
+        artifacts.add(newArtifact(
+                "c",
+                newJar().withClass("shared/S.class", 52)
+                        .withClass("a/A.class", 52)
+                        .withClass("c/C.class", 52)));
+        return artifacts;
+    }
+
+    private static String jsonArray(Set<Artifact> artifacts, String... artifactIds) {
+        StringBuilder result = new StringBuilder("[");
+        for (Artifact artifact : artifacts) {
+            if (Arrays.asList(artifactIds).contains(artifact.getArtifactId())) {
+                result.append(result.length() > 1 ? "," : "")
+                        .append('"')
+                        .append(artifact)
+                        .append('"');
+            }
+        }
+        return result.append(']').toString();
+    }
+
+    private static void writeFile(File directory, String path, byte[] content) throws IOException {
+        File file = new File(directory, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+    }
+
+    private Artifact newArtifact(String artifactId, JarFileHelper jar) throws IOException {
+        File file = jar.writeTo(new File(tempFolder, artifactId + ".jar"));
+        return ArtifactBuilder.newBuilder()
+                .withArtifactId(artifactId)
+                .withType("jar")
+                .withFileOrDirectory(file)
+                .build();
+    }
+}
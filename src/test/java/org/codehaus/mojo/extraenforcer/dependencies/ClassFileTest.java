@@ -1,12 +1,16 @@
 package org.codehaus.mojo.extraenforcer.dependencies;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ClassFileTest {
     private static final String PATH_TO_CLASS_FILE =
@@ -39,4 +43,36 @@ public class ClassFileTest {
         assertEquals("e0ac3601005dfa1864f5392aabaf7d898b1b5bab854f1acb4491bcd806b76b0c", hash1);
         assertEquals(hash1, hash2);
     }
+
+    @Test
+    void suppliedHexHashEqualsDigestOfContent() throws Exception {
+        ClassFile classFile = classFileHelper.createWithContent(PATH_TO_CLASS_FILE, "file content");
+        ClassFile supplied = new ClassFile(
+                PATH_TO_CLASS_FILE,
+                ArtifactBuilder.newBuilder().build(),
+                () -> "E0AC3601005DFA1864F5392AABAF7D898B1B5BAB854F1ACB4491BCD806B76B0C");
+
+        assertTrue(classFile.hasSameContentAs(supplied));
+        assertTrue(supplied.hasSameContentAs(classFile));
+    }
+
+    @Test
+    void rejectsSuppliedHashesWhichAreNotHex() {
+        ClassFile classFile =
+                new ClassFile(PATH_TO_CLASS_FILE, ArtifactBuilder.newBuilder().build(), () -> "file content");
+
+        assertThrows(IllegalArgumentException.class, classFile::getHash);
+    }
+
+    @Test
+    void getHashWrapsReadFailures() {
+        ContentHashSupplier failing = () -> {
+            throw new IOException("gone");
+        };
+        ClassFile classFile =
+                new ClassFile(PATH_TO_CLASS_FILE, ArtifactBuilder.newBuilder().build(), failing);
+
+        UncheckedIOException exception = assertThrows(UncheckedIOException.class, classFile::getHash);
+        assertEquals("gone", exception.getCause().getMessage());
+    }
 }
@@ -0,0 +1,135 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.codehaus.mojo.extraenforcer.dependencies.ClassNameHashes.isCandidate;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClassNameHashRunsTest {
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void keepsHashesInMemoryWithinCapacity() throws IOException {
+        try (ClassNameHashRuns runs = new ClassNameHashRuns(tempFolder.toPath(), 10)) {
+            runs.add(new long[] {5, 3, 9, 3});
+            runs.add(new long[] {9, -4, -4});
+
+            assertArrayEquals(new long[] {-4, 3, 9}, runs.duplicates());
+            assertEquals(0, runs.getRunCount());
+        }
+    }
+
+    @Test
+    void growsUpToTheCapacity() throws IOException {
+        long[] hashes = new long[5000];
+        Arrays.setAll(hashes, i -> i);
+        try (ClassNameHashRuns runs = new ClassNameHashRuns(tempFolder.toPath(), 10000)) {
+            runs.add(hashes);
+            runs.add(hashes);
+
+            assertArrayEquals(hashes, runs.duplicates());
+            assertEquals(0, runs.getRunCount());
+        }
+    }
+
+    @Test
+    void tellsTheArraysWithDuplicates() throws IOException {
+        try (ClassNameHashRuns runs = new ClassNameHashRuns(tempFolder.toPath(), 3)) {
+            runs.add(new long[] {5, 3, 9});
+            runs.add(new long[] {7, 1});
+            runs.add(new long[] {});
+            runs.add(new long[] {2, 4, 6, 8, 3});
+            runs.add(new long[] {11, 9});
+
+            long[] duplicates = runs.duplicates();
+            assertArrayEquals(new long[] {3, 9}, duplicates);
+            assertEquals(BitSet.valueOf(new long[] {0b11001}), runs.getArraysWith(duplicates));
+        }
+        // the runs and the log are deleted
+        assertEquals(0, tempFolder.list().length);
+    }
+
+    @Test
+    void mergesSpilledRuns() throws IOException {
+        try (ClassNameHashRuns runs = new ClassNameHashRuns(tempFolder.toPath(), 3)) {
+            runs.add(new long[] {5, 3, 9, 3});
+            runs.add(new long[] {7, 9, 1});
+            runs.add(new long[] {9, -4, -4});
+
+            assertArrayEquals(new long[] {-4, 3, 9}, runs.duplicates());
+            assertEquals(4, runs.getRunCount());
+        }
+        // the runs are deleted
+        assertEquals(0, tempFolder.list().length);
+    }
+
+    @Test
+    void sameDuplicatesAsInMemory() throws IOException {
+        Random random = new Random(42);
+        long[][] hashes = new long[50][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = new long[random.nextInt(200)];
+            for (int j = 0; j < hashes[i].length; j++) {
+                hashes[i][j] = random.nextInt(5000);
+            }
+        }
+
+        try (ClassNameHashRuns runs = new ClassNameHashRuns(tempFolder.toPath(), 64)) {
+            for (long[] artifactHashes : hashes) {
+                runs.add(artifactHashes);
+            }
+            // more duplicates than the capacity
+            long[] duplicates = duplicatesOf(hashes);
+            assertArrayEquals(duplicates, runs.duplicates());
+
+            for (int i = 0; i < hashes.length; i++) {
+                boolean withDuplicate = Arrays.stream(hashes[i]).anyMatch(hash -> isCandidate(duplicates, hash));
+                assertEquals(withDuplicate, runs.getArraysWith(duplicates).get(i));
+            }
+        }
+    }
+
+    private static long[] duplicatesOf(long[][] hashes) {
+        Map<Long, Long> counts = Arrays.stream(hashes)
+                .flatMapToLong(Arrays::stream)
+                .boxed()
+                .collect(Collectors.groupingBy(Function.identity(), TreeMap::new, Collectors.counting()));
+        return counts.entrySet().stream()
+                .filter(count -> count.getValue() > 1)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+}
@@ -0,0 +1,117 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassNameHashTableTest {
+
+    @Test
+    void returnsReferencesOfDuplicatedHashesInOrder() {
+        ClassNameHashTable table = new ClassNameHashTable();
+        assertEquals(0, table.add(new long[] {5, 3, -9, 3}));
+        assertEquals(1, table.add(new long[] {7, -9, 1}));
+        assertEquals(2, table.add(new long[] {-9, 0x100L, 0x200L}));
+        assertEquals(10, table.size());
+
+        long[] references = duplicateReferences(table);
+
+        assertArrayEquals(new long[] {ref(0, 1), ref(0, 2), ref(0, 3), ref(1, 1), ref(2, 0)}, references);
+        assertEquals(1, ClassNameHashTable.artifactIndex(references[3]));
+        assertEquals(1, ClassNameHashTable.classIndex(references[3]));
+    }
+
+    @Test
+    void sortsLargeTables() {
+        ClassNameHashTable table = new ClassNameHashTable();
+        long[] hashes = new Random(42).longs(10_000).toArray();
+        hashes[9_999] = hashes[17];
+        table.add(hashes);
+        table.add(new long[] {hashes[4_711]});
+
+        assertArrayEquals(new long[] {ref(0, 17), ref(0, 4_711), ref(0, 9_999), ref(1, 0)}, duplicateReferences(table));
+    }
+
+    @Test
+    void sortsLargeTablesInParallelRanges() {
+        ClassNameHashTable sequential = new ClassNameHashTable();
+        ClassNameHashTable parallel = new ClassNameHashTable(1);
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            long[] hashes = random.ints(5_000, 0, 50_000).asLongStream().toArray();
+            sequential.add(hashes);
+            parallel.add(hashes);
+        }
+
+        long[] references = duplicateReferences(parallel);
+
+        assertTrue(references.length > 0);
+        assertArrayEquals(duplicateReferences(sequential), references);
+    }
+
+    @Test
+    void emptyTableHasNoDuplicates() {
+        assertArrayEquals(new long[0], duplicateReferences(new ClassNameHashTable()));
+    }
+
+    @Test
+    void groupsReferencesByHash() {
+        ClassNameHashTable table = new ClassNameHashTable();
+        table.add(new long[] {5, 3, -9, 3});
+        table.add(new long[] {7, -9, 1});
+        table.add(new long[] {-9, 0x100L, 0x200L});
+        List<List<Long>> groups = new ArrayList<>();
+
+        assertEquals(5, table.forEachDuplicateGroup((references, from, to) -> {
+            List<Long> group = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                group.add(references[i]);
+            }
+            groups.add(group);
+        }));
+
+        assertEquals(
+                Arrays.asList(Arrays.asList(ref(0, 1), ref(0, 3)), Arrays.asList(ref(0, 2), ref(1, 1), ref(2, 0))),
+                groups);
+    }
+
+    private static long[] duplicateReferences(ClassNameHashTable table) {
+        List<Long> all = new ArrayList<>();
+        table.forEachDuplicateGroup((references, from, to) -> {
+            for (int i = from; i < to; i++) {
+                all.add(references[i]);
+            }
+        });
+        return all.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static long ref(int artifactIndex, int classIndex) {
+        return ((long) artifactIndex << 32) | classIndex;
+    }
+}
@@ -0,0 +1,68 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassNameHashesTest {
+
+    @Test
+    void hashDependsOnAllCharacters() {
+        assertEquals(ClassNameHashes.hash("a/B.class"), ClassNameHashes.hash("a/B.class"));
+        assertNotEquals(ClassNameHashes.hash("a/B.class"), ClassNameHashes.hash("a/C.class"));
+        assertNotEquals(ClassNameHashes.hash("a/B.class"), ClassNameHashes.hash("b/B.class"));
+        assertNotEquals(ClassNameHashes.hash("Aa"), ClassNameHashes.hash("BB"));
+    }
+
+    @Test
+    void hashOfStringEqualsHashOfItsUtf8Bytes() {
+        byte[] name = "xb/été.class".getBytes(StandardCharsets.UTF_8);
+        assertEquals(
+                ClassNameHashes.hash("b/été.class"), ClassNameHashes.hash(ByteBuffer.wrap(name), 1, name.length - 1));
+    }
+
+    @Test
+    void compactsHashesOccurringMoreThanOnce() {
+        long[] sorted = {-4, -4, 1, 3, 3, 3, 5, 7, 9, 9};
+
+        long[] duplicates = Arrays.copyOf(sorted, ClassNameHashes.compactDuplicates(sorted, sorted.length));
+
+        assertArrayEquals(new long[] {-4, 3, 9}, duplicates);
+        assertTrue(ClassNameHashes.isCandidate(duplicates, 9));
+        assertFalse(ClassNameHashes.isCandidate(duplicates, 7));
+    }
+
+    @Test
+    void noDuplicatesInDistinctHashes() {
+        assertEquals(0, ClassNameHashes.compactDuplicates(new long[] {1, 2, 3}, 3));
+        assertEquals(0, ClassNameHashes.compactDuplicates(new long[] {1, 1}, 1));
+        assertEquals(0, ClassNameHashes.compactDuplicates(new long[0], 0));
+    }
+}
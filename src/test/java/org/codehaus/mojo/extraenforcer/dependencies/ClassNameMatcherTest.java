@@ -0,0 +1,174 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassNameMatcherTest {
+
+    @Test
+    void matchesWithAndWithoutClassSuffix() {
+        ClassNameMatcher matcher = ClassNameMatcher.builder()
+                .add("module-info", 0)
+                .add("org/apache/*", 0)
+                .add("com/foo/Bar?", 0)
+                .build();
+
+        assertTrue(matcher.matches("module-info.class"));
+        assertFalse(matcher.matches("a/module-info.class"));
+        assertTrue(matcher.matches("org/apache/maven/Stuff.class"));
+        assertFalse(matcher.matches("org/apach/Stuff.class"));
+        assertTrue(matcher.matches("com/foo/Bar1.class"));
+        assertTrue(matcher.matches("com/foo/Bar$.class"));
+        assertFalse(matcher.matches("com/foo/Bar.class"));
+        assertFalse(matcher.matches("com/foo/Bar12.class"));
+    }
+
+    @Test
+    void onlyConsidersGivenOwners() {
+        ClassNameMatcher matcher = ClassNameMatcher.builder()
+                .add("a/*", 0)
+                .add("b/*", 1)
+                .add("a/B", 2)
+                .build();
+        BitSet second = new BitSet();
+        second.set(1);
+        BitSet third = new BitSet();
+        third.set(2);
+
+        assertTrue(matcher.matches("a/B.class"));
+        assertFalse(matcher.matches("a/B.class", second));
+        assertTrue(matcher.matches("b/B.class", second));
+        assertTrue(matcher.matches("a/B.class", third));
+        assertFalse(matcher.matches("a/C.class", third));
+    }
+
+    @Test
+    void recognizesWildcardsMatchingEverything() {
+        ClassNameMatcher matcher =
+                ClassNameMatcher.builder().add("org/shaded/*", 0).add("*", 1).build();
+        BitSet first = new BitSet();
+        first.set(0);
+        BitSet second = new BitSet();
+        second.set(1);
+
+        assertTrue(matcher.matchesEverything(null));
+        assertFalse(matcher.matchesEverything(first));
+        assertTrue(matcher.matchesEverything(second));
+        assertTrue(matcher.matches("org/shaded/a/b/C.class", first));
+        assertFalse(matcher.matches("org/shade/C.class", first));
+    }
+
+    @Test
+    void recognizesEveryWildcardMatchingAllClassFiles() {
+        for (String wildcard : new String[] {"*", "**", "*.class", "**.class", "*s", "*.c*", "*?"}) {
+            assertTrue(ClassNameMatcher.builder().add(wildcard, 0).build().matchesEverything(null), wildcard);
+        }
+        for (String wildcard : new String[] {"*/*", "a*", "*.clas", "*.java", "*A"}) {
+            assertFalse(ClassNameMatcher.builder().add(wildcard, 0).build().matchesEverything(null), wildcard);
+        }
+
+        ClassNameMatcher matcher = ClassNameMatcher.builder()
+                .add("*", 0)
+                .add("*.class", 1)
+                .add("*", 2)
+                .add("a/*", 3)
+                .build();
+        for (int owner = 0; owner < 3; owner++) {
+            BitSet owners = new BitSet();
+            owners.set(owner);
+            assertTrue(matcher.matchesEverything(owners));
+        }
+        BitSet fourth = new BitSet();
+        fourth.set(3);
+        assertFalse(matcher.matchesEverything(fourth));
+    }
+
+    @Test
+    void returnsTheLengthOfAMatchedPrefix() {
+        ClassNameMatcher matcher = ClassNameMatcher.builder()
+                .add("org/shaded/*", 0)
+                .add("com/foo/Bar", 0)
+                .add("*", 1)
+                .build();
+        BitSet first = new BitSet();
+        first.set(0);
+        BitSet second = new BitSet();
+        second.set(1);
+
+        assertEquals(11, matcher.matchedPrefixLength("org/shaded/a/B.class", first));
+        assertEquals(ClassNameMatcher.PATH_MATCH, matcher.matchedPrefixLength("com/foo/Bar.class", first));
+        assertEquals(ClassNameMatcher.NO_MATCH, matcher.matchedPrefixLength("com/foo/Baz.class", first));
+        assertEquals(0, matcher.matchedPrefixLength("com/foo/Baz.class", second));
+    }
+
+    @Test
+    void emptyMatcherMatchesNothing() {
+        ClassNameMatcher matcher = ClassNameMatcher.builder().build();
+
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matches("A.class"));
+    }
+
+    @Test
+    void agreesWithRegularExpressions() {
+        List<String> wildcards =
+                Arrays.asList("a/*", "a/b*c", "*", "*.class", "a/?", "*b*", "a/**/c", "a/b/c", "?*?", "a$b", "a.b", "");
+        Random random = new Random(17);
+        ClassNameMatcher.Builder builder = ClassNameMatcher.builder();
+        Pattern[] patterns = new Pattern[wildcards.size()];
+        for (int i = 0; i < wildcards.size(); i++) {
+            builder.add(wildcards.get(i), i);
+            patterns[i] = Pattern.compile(AbstractResolveDependencies.asRegex(wildcards.get(i)));
+        }
+        ClassNameMatcher matcher = builder.build();
+
+        String alphabet = "abc/.$";
+        for (int run = 0; run < 5000; run++) {
+            StringBuilder path = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                path.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (random.nextBoolean()) {
+                path.append(".class");
+            }
+            BitSet owners = new BitSet();
+            boolean expected = false;
+            for (int i = 0; i < patterns.length; i++) {
+                if (random.nextInt(3) == 0) {
+                    owners.set(i);
+                    expected |= patterns[i].matcher(path).matches();
+                }
+            }
+            assertEquals(expected, matcher.matches(path.toString(), owners), path + " " + owners);
+        }
+    }
+}
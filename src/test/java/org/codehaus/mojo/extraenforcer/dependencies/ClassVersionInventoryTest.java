@@ -0,0 +1,149 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassVersionInventoryTest {
+
+    private static final int[] RELEASES = releasesOf(
+            "module-info.class",
+            "a/A.class",
+            "a/B.class",
+            "META-INF/versions/11/a/A.class",
+            "META-INF/versions/9/a/A.class",
+            "META-INF/versions/x/a/A.class");
+
+    @Test
+    void keepsHighestVersionPerTree() {
+        ClassVersionInventory inventory =
+                ClassVersionInventory.of(RELEASES, new int[] {53, 50, 52, 55, 53, 49}, new int[] {0, 3, 0, 0, 0, 0});
+
+        List<ClassVersionInventory.Tree> trees = inventory.getTrees();
+        assertEquals(3, trees.size());
+        assertTree(trees.get(0), 0, 53, 0, 0);
+        assertTree(trees.get(1), 9, 53, 0, 4);
+        assertTree(trees.get(2), 11, 55, 0, 3);
+        assertFalse(inventory.hasUnknownVersions());
+    }
+
+    @Test
+    void isWithinComparesAllTrees() {
+        ClassVersionInventory inventory =
+                ClassVersionInventory.of(RELEASES, new int[] {52, 50, 52, 55, 53, 49}, new int[] {0, 3, 0, 0, 0, 0});
+
+        assertTrue(inventory.isWithin(55, 0));
+        assertFalse(inventory.isWithin(54, 0));
+        assertFalse(inventory.isWithin(52, 0));
+    }
+
+    @Test
+    void comparesMinorVersions() {
+        ClassVersionInventory inventory = ClassVersionInventory.of(new int[2], new int[] {45, 45}, new int[] {3, 2});
+
+        assertTrue(inventory.isWithin(45, 3));
+        assertFalse(inventory.isWithin(45, 2));
+    }
+
+    @Test
+    void unknownVersionsAreNeverWithin() {
+        ClassVersionInventory inventory = ClassVersionInventory.of(
+                new int[2], new int[] {50, JarContents.UNKNOWN_VERSION}, new int[] {0, JarContents.UNKNOWN_VERSION});
+
+        assertTrue(inventory.hasUnknownVersions());
+        assertFalse(inventory.isWithin(65, 0));
+    }
+
+    @Test
+    void restoresWrittenInventory() throws Exception {
+        ClassVersionInventory inventory =
+                ClassVersionInventory.of(RELEASES, new int[] {53, 50, 52, 55, 53, 49}, new int[] {0, 3, 0, 0, 0, 0});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            inventory.writeTo(out);
+        }
+
+        ClassVersionInventory restored = ClassVersionInventory.restore(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertEquals(inventory.getTrees().size(), restored.getTrees().size());
+        for (int i = 0; i < inventory.getTrees().size(); i++) {
+            ClassVersionInventory.Tree tree = inventory.getTrees().get(i);
+            assertTree(
+                    restored.getTrees().get(i),
+                    tree.getRelease(),
+                    tree.getMaxMajor(),
+                    tree.getMaxMinor(),
+                    tree.getMaxEntryIndex());
+        }
+    }
+
+    @Test
+    void treesWithUnreadEntriesAreNeverWithin() {
+        int n = JarContents.NOT_READ;
+        ClassVersionInventory inventory =
+                ClassVersionInventory.of(RELEASES, new int[] {52, 50, 52, n, 53, 49}, new int[] {0, 3, 0, n, 0, 0});
+
+        List<ClassVersionInventory.Tree> trees = inventory.getTrees();
+        assertEquals(3, trees.size());
+        assertTrue(trees.get(0).isRead());
+        assertTrue(trees.get(1).isRead());
+        assertFalse(trees.get(2).isRead());
+        assertFalse(inventory.isRead(release -> true));
+        assertTrue(inventory.isRead(release -> release < 11));
+        assertFalse(inventory.isWithin(65, 0));
+        assertTrue(inventory.isWithin(53, 0, release -> release < 11));
+        assertTrue(inventory.isWithin(52, 0, release -> release == 0));
+    }
+
+    @Test
+    void parsesTheReleaseOfAnEntry() {
+        assertEquals(11, ClassVersionInventory.releaseOf("META-INF/versions/11/a/A.class"));
+        assertEquals(9, ClassVersionInventory.releaseOf("META-INF/versions/09/A.class"));
+        assertEquals(0, ClassVersionInventory.releaseOf("META-INF/versions/x/A.class"));
+        assertEquals(0, ClassVersionInventory.releaseOf("META-INF/versions//A.class"));
+        assertEquals(0, ClassVersionInventory.releaseOf("META-INF/versions/11"));
+        assertEquals(0, ClassVersionInventory.releaseOf("META-INF/versions/99999999999/A.class"));
+        assertEquals(0, ClassVersionInventory.releaseOf("a/META-INF/versions/11/A.class"));
+    }
+
+    private static int[] releasesOf(String... names) {
+        int[] releases = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            releases[i] = ClassVersionInventory.releaseOf(names[i]);
+        }
+        return releases;
+    }
+
+    private static void assertTree(ClassVersionInventory.Tree tree, int release, int major, int minor, int index) {
+        assertEquals(release, tree.getRelease());
+        assertEquals(major, tree.getMaxMajor());
+        assertEquals(minor, tree.getMaxMinor());
+        assertEquals(index, tree.getMaxEntryIndex());
+    }
+}
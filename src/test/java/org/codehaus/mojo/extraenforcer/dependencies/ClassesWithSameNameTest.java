@@ -20,7 +20,9 @@ package org.codehaus.mojo.extraenforcer.dependencies;
  */
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.enforcer.rule.api.EnforcerLogger;
@@ -28,6 +30,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.newJar;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -254,4 +258,142 @@ public class ClassesWithSameNameTest {
         assertTrue(result.contains(artifact1));
         assertTrue(result.contains(artifact2));
     }
+
+    /**
+     * Comparing just the names must never read the content of the class files.
+     */
+    @Test
+    void hasDuplicatesShouldNotHashWhenComparingJustClassNames() {
+        ClassFile classFile1 = classFileWithHash(ClassesWithSameNameTest::mustNotBeHashed);
+        ClassFile classFile2 = classFileWithHash(ClassesWithSameNameTest::mustNotBeHashed);
+        ClassesWithSameName classesWithSameName = new ClassesWithSameName(LOG, classFile1, classFile2);
+
+        assertDoesNotThrow(() -> assertTrue(classesWithSameName.hasDuplicates(DETERMINE_DUPLICATES_BY_NAME)));
+    }
+
+    /**
+     * Once a difference is found, class files added later are not hashed anymore and every class file is hashed
+     * at most once.
+     */
+    @Test
+    void hasDuplicatesShouldHashEveryClassAtMostOnce() throws Exception {
+        AtomicInteger hashed = new AtomicInteger();
+        ClassFile classFile1 = classFileWithHash(() -> {
+            hashed.incrementAndGet();
+            return "01";
+        });
+        ClassFile classFile2 = classFileWithHash(() -> {
+            hashed.incrementAndGet();
+            return "02";
+        });
+        ClassFile classFile3 = classFileWithHash(ClassesWithSameNameTest::mustNotBeHashed);
+        ClassesWithSameName classesWithSameName = new ClassesWithSameName(LOG, classFile1);
+
+        assertFalse(classesWithSameName.hasDuplicates(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+        assertEquals(0, hashed.get());
+
+        classesWithSameName.add(classFile2);
+        assertTrue(classesWithSameName.hasDuplicates(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+        assertTrue(classesWithSameName.hasDuplicates(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+        assertEquals(2, hashed.get());
+
+        classesWithSameName.add(classFile3);
+        assertTrue(classesWithSameName.hasDuplicates(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+    }
+
+    /**
+     * Class files whose CRC-32 or size differ are known to be different without hashing them.
+     */
+    @Test
+    void classFilesWithDifferentCrcOrSizeShouldNotBeHashed() throws Exception {
+        ClassFile classFile1 = classFileWithCrc(1, 100);
+        ClassFile classFile2 = classFileWithCrc(1, 101);
+        ClassFile classFile3 = classFileWithCrc(2, 100);
+
+        ClassesWithSameName classesWithSameName = new ClassesWithSameName(LOG, classFile1, classFile2, classFile3);
+
+        assertTrue(classesWithSameName.hasDuplicates(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+        assertEquals(PATH_TO_CLASS_FILE, classesWithSameName.toOutputString(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+    }
+
+    /**
+     * Class files with the same CRC-32 and size are still hashed, as they may differ nevertheless.
+     */
+    @Test
+    void classFilesWithSameCrcAndSizeShouldBeHashed() throws Exception {
+        ClassFile classFile1 = new ClassFile(
+                PATH_TO_CLASS_FILE, ArtifactBuilder.newBuilder().build(), () -> ContentDigest.ofHex("01"), 1, 100);
+        ClassFile classFile2 = new ClassFile(
+                PATH_TO_CLASS_FILE, ArtifactBuilder.newBuilder().build(), () -> ContentDigest.ofHex("02"), 1, 100);
+
+        assertTrue(new ClassesWithSameName(LOG, classFile1, classFile2)
+                .hasDuplicates(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+    }
+
+    /**
+     * Class files of jars with the same content are identical without hashing them, class files of other jars are
+     * still hashed.
+     */
+    @Test
+    void classFilesOfJarsWithSameContentShouldNotBeHashed() throws Exception {
+        File file = newJar().withClass(PATH_TO_CLASS_FILE, 52)
+                .withClass("a/B.class", 52)
+                .writeTo(new File(temporaryFolder, "a-1.jar"));
+        File copy = new File(temporaryFolder, "a-2.jar");
+        Files.copy(file.toPath(), copy.toPath());
+        JarContents jar1 = new JarContents(file);
+        JarContents jar2 = new JarContents(copy);
+        JarContents other =
+                new JarContents(newJar().withClass(PATH_TO_CLASS_FILE, 52).writeTo(new File(temporaryFolder, "b.jar")));
+        Artifact artifact1 = ArtifactBuilder.newBuilder().withVersion("1").build();
+        Artifact artifact2 = ArtifactBuilder.newBuilder().withVersion("2").build();
+        Artifact artifact3 = ArtifactBuilder.newBuilder().withVersion("3").build();
+        AtomicInteger hashed = new AtomicInteger();
+
+        ClassesWithSameName classesWithSameName = new ClassesWithSameName(
+                LOG,
+                classFileOfJar(artifact1, jar1, () -> ContentDigest.ofHex(mustNotBeHashed())),
+                classFileOfJar(artifact2, jar2, () -> ContentDigest.ofHex(mustNotBeHashed())));
+        assertFalse(classesWithSameName.hasDuplicates(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+
+        classesWithSameName = new ClassesWithSameName(
+                LOG,
+                classFileOfJar(artifact1, jar1, () -> {
+                    hashed.incrementAndGet();
+                    return ContentDigest.ofHex("01");
+                }),
+                classFileOfJar(artifact2, jar2, () -> ContentDigest.ofHex(mustNotBeHashed())),
+                classFileOfJar(artifact3, other, () -> {
+                    hashed.incrementAndGet();
+                    return ContentDigest.ofHex("02");
+                }));
+        assertTrue(classesWithSameName.hasDuplicates(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+        assertEquals(
+                PATH_TO_CLASS_FILE + "  -- the bytecode exactly matches in these: " + artifact1 + " and " + artifact2,
+                classesWithSameName.toOutputString(DETERMINE_DUPLICATES_BY_NAME_AND_BYTECODE));
+        assertEquals(2, hashed.get());
+    }
+
+    private static ClassFile classFileOfJar(Artifact artifact, JarContents jar, ContentDigestSupplier digestSupplier)
+            throws Exception {
+        int index = jar.getClassEntryNames().indexOf(PATH_TO_CLASS_FILE);
+        return new ClassFile(PATH_TO_CLASS_FILE, artifact, digestSupplier, jar.getCrc(index), jar.getSize(index), jar);
+    }
+
+    private static ClassFile classFileWithCrc(long crc, long size) {
+        return new ClassFile(
+                PATH_TO_CLASS_FILE,
+                ArtifactBuilder.newBuilder().build(),
+                () -> ContentDigest.ofHex(mustNotBeHashed()),
+                crc,
+                size);
+    }
+
+    private static ClassFile classFileWithHash(ContentHashSupplier hashSupplier) {
+        return new ClassFile(PATH_TO_CLASS_FILE, ArtifactBuilder.newBuilder().build(), hashSupplier);
+    }
+
+    private static String mustNotBeHashed() {
+        throw new IllegalStateException("must not be hashed");
+    }
 }
@@ -0,0 +1,190 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import com.sun.management.ThreadMXBean;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ContentHashAlgorithmTest {
+
+    private static final int ITERATIONS = 20_000;
+
+    @TempDir
+    private File tempFolder;
+
+    private static final byte[] CONTENT = "the content of the file".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void sha256IsTheHexDigest() throws Exception {
+        ContentDigest digest = ContentHashAlgorithm.SHA_256.digest(() -> new ByteArrayInputStream(CONTENT));
+
+        assertEquals(DigestUtils.sha256Hex(CONTENT), digest.toString());
+        assertEquals(32, digest.getBytes().length);
+    }
+
+    @Test
+    void murmur3DigestsAre128Bits() throws Exception {
+        ContentDigest digest = ContentHashAlgorithm.MURMUR3_128.digest(() -> new ByteArrayInputStream(CONTENT));
+        ContentDigest same = ContentHashAlgorithm.MURMUR3_128.digest(() -> new ByteArrayInputStream(CONTENT.clone()));
+        ContentDigest other = ContentHashAlgorithm.MURMUR3_128.digest(
+                () -> new ByteArrayInputStream("other content".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(16, digest.getBytes().length);
+        assertEquals(digest, same);
+        assertEquals(digest.hashCode(), same.hashCode());
+        assertNotEquals(digest, other);
+    }
+
+    @Test
+    void murmur3MatchesCommonsCodec() {
+        Random random = new Random(42);
+        for (int length = 0; length < 100; length++) {
+            byte[] content = new byte[length];
+            random.nextBytes(content);
+            long[] expected = MurmurHash3.hash128x64(content);
+
+            byte[] digest = ContentHashAlgorithm.MURMUR3_128
+                    .digest(ByteBuffer.wrap(content))
+                    .getBytes();
+
+            ByteBuffer actual = ByteBuffer.wrap(digest);
+            assertEquals(expected[0], actual.getLong(), "length " + length);
+            assertEquals(expected[1], actual.getLong(), "length " + length);
+        }
+    }
+
+    @Test
+    void digestsSmallAndMappedFiles() throws Exception {
+        byte[] large = new byte[200_000];
+        new Random(42).nextBytes(large);
+        Path small = Files.write(tempFolder.toPath().resolve("Small.class"), CONTENT);
+        Path mapped = Files.write(tempFolder.toPath().resolve("Large.class"), large);
+
+        for (ContentHashAlgorithm algorithm : ContentHashAlgorithm.values()) {
+            assertEquals(algorithm.digest(ByteBuffer.wrap(CONTENT)), algorithm.digest(small));
+            assertEquals(algorithm.digest(ByteBuffer.wrap(large)), algorithm.digest(mapped));
+            assertEquals(
+                    algorithm.digest(ByteBuffer.wrap(large)), algorithm.digest(() -> Files.newInputStream(mapped)));
+        }
+    }
+
+    /**
+     * Once the pooled digests and buffers exist, digesting a class into a reused target doesn't allocate.
+     */
+    @Test
+    void steadyStateHashingAllocatesNothingPerClass() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof ThreadMXBean);
+        ThreadMXBean threads = (ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        byte[] bytes = new byte[3000];
+        new Random(42).nextBytes(bytes);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        for (ContentHashAlgorithm algorithm : ContentHashAlgorithm.values()) {
+            for (ByteBuffer content : new ByteBuffer[] {ByteBuffer.wrap(bytes), direct}) {
+                byte[] target = new byte[algorithm.getLength()];
+                digestRepeatedly(algorithm, content, target);
+
+                long before =
+                        threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                digestRepeatedly(algorithm, content, target);
+                long allocated =
+                        threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+                assertTrue(
+                        allocated < ITERATIONS,
+                        algorithm + " allocated " + allocated + " bytes for " + ITERATIONS + " classes");
+            }
+        }
+    }
+
+    /**
+     * Reading and inflating a class from a jar uses pooled inflaters and buffers, only the digest which is kept is
+     * allocated per class.
+     */
+    @Test
+    void steadyStateJarHashingAllocatesOnlyTheDigests() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof ThreadMXBean);
+        ThreadMXBean threads = (ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Random random = new Random(42);
+        JarFileHelper helper = JarFileHelper.newJar();
+        int classes = 2000;
+        for (int i = 0; i < classes; i++) {
+            byte[] content = new byte[3000];
+            // compressible, like class files
+            for (int j = 0; j < content.length; j++) {
+                content[j] = (byte) ('a' + random.nextInt(8));
+            }
+            helper.withEntry("C" + i + ".class", content);
+        }
+        File jar = helper.writeTo(new File(tempFolder, "test.jar"));
+
+        for (ContentHashAlgorithm algorithm : ContentHashAlgorithm.values()) {
+            digestAll(new JarContents(jar), algorithm);
+
+            JarContents jarContents = new JarContents(jar);
+            jarContents.getClassEntryNames();
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            digestAll(jarContents, algorithm);
+            long allocated =
+                    threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            jarContents.release();
+
+            assertTrue(
+                    allocated < classes * 160L,
+                    algorithm + " allocated " + allocated + " bytes for " + classes + " classes");
+        }
+    }
+
+    private static void digestAll(JarContents jarContents, ContentHashAlgorithm algorithm) throws Exception {
+        for (int i = 0; i < jarContents.getClassEntryNames().size(); i++) {
+            jarContents.getDigest(i, algorithm);
+        }
+    }
+
+    private static void digestRepeatedly(ContentHashAlgorithm algorithm, ByteBuffer content, byte[] target) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            content.rewind();
+            algorithm.digest(content, target);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateClassesReportTest {
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void describesOnlyTheListedClassesOfTheFirstGroups() throws Exception {
+        Set<Artifact> large = artifacts("a", "b");
+        Set<Artifact> small = artifacts("c", "d");
+        List<String> described = new ArrayList<>();
+        String message;
+        try (DuplicateClassesReport report = new DuplicateClassesReport(null, 1, null)) {
+            for (int i = 0; i < DuplicateClassesReport.MAX_LISTED_CLASSES + 5; i++) {
+                add(report, "large/L" + i + ".class", large, described);
+            }
+            add(report, "small/S.class", small, described);
+            message = report.getMessage();
+        }
+
+        assertEquals(DuplicateClassesReport.MAX_LISTED_CLASSES, described.size());
+        assertFalse(described.contains("small/S.class"));
+        assertTrue(message.contains("large/L0.class"));
+        assertTrue(message.contains("And 5 more duplicate classes"));
+        assertTrue(message.contains("And 1 duplicate classes in 1 more groups of artifacts"));
+    }
+
+    @Test
+    void describesAllClassesWithoutLimit() throws Exception {
+        List<String> described = new ArrayList<>();
+        try (DuplicateClassesReport report = new DuplicateClassesReport(null, 0, null)) {
+            add(report, "small/S.class", artifacts("a", "b"), described);
+            for (int i = 0; i < DuplicateClassesReport.MAX_LISTED_CLASSES + 5; i++) {
+                add(report, "large/L" + i + ".class", artifacts("c", "d"), described);
+            }
+            assertEquals(DuplicateClassesReport.MAX_LISTED_CLASSES + 6, report.getCount());
+        }
+
+        assertEquals(DuplicateClassesReport.MAX_LISTED_CLASSES + 6, described.size());
+    }
+
+    @Test
+    void createsTheFileOnlyForDuplicateClasses() throws Exception {
+        Path file = tempFolder.toPath().resolve("report/duplicate-classes.jsonl");
+        try (DuplicateClassesReport report = new DuplicateClassesReport(null, 1, file)) {
+            assertFalse(Files.exists(file));
+            add(report, "a/A.class", artifacts("a", "b"), new ArrayList<>());
+            add(report, "c/C.class", artifacts("c", "d"), new ArrayList<>());
+        }
+
+        assertEquals(2, Files.readAllLines(file).size());
+    }
+
+    private static void add(
+            DuplicateClassesReport report, String className, Set<Artifact> artifacts, List<String> described)
+            throws IOException {
+        report.add(className, artifacts, Collections.emptyList(), () -> {
+            described.add(className);
+            return className;
+        });
+    }
+
+    private static Set<Artifact> artifacts(String... artifactIds) {
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (String artifactId : artifactIds) {
+            artifacts.add(
+                    ArtifactBuilder.newBuilder().withArtifactId(artifactId).build());
+        }
+        return artifacts;
+    }
+}
@@ -16,14 +16,33 @@
 
 package org.codehaus.mojo.extraenforcer.dependencies;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.newJar;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 class EnforceBytecodeVersionTest {
 
@@ -72,4 +91,190 @@ class EnforceBytecodeVersionTest {
     void decodeMajorVersion(String version, int expectedMajor) {
         assertEquals(expectedMajor, EnforceBytecodeVersion.decodeMajorVersion(version));
     }
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void reportsBannedArtifactsInDependencyOrder() throws Exception {
+        EnforceBytecodeVersion rule = newRule(4);
+
+        EnforcerRuleException e =
+                assertThrows(EnforcerRuleException.class, () -> rule.handleArtifacts(newArtifacts(20)));
+
+        assertEquals(
+                "Found Banned Dependency: groupId:a0:type:classifier:1.0\n"
+                        + "Found Banned Dependency: groupId:a3:type:classifier:1.0\n"
+                        + "Found Banned Dependency: groupId:a6:type:classifier:1.0\n"
+                        + "Found Banned Dependency: groupId:a9:type:classifier:1.0\n"
+                        + "Found Banned Dependency: groupId:a12:type:classifier:1.0\n"
+                        + "Found Banned Dependency: groupId:a15:type:classifier:1.0\n"
+                        + "Found Banned Dependency: groupId:a18:type:classifier:1.0\n"
+                        + "Use 'mvn dependency:tree' to locate the source of the banned dependencies.",
+                e.getMessage());
+    }
+
+    @Test
+    void failFastStopsAtFirstBannedArtifact() throws Exception {
+        for (int parallelism : new int[] {1, 4}) {
+            EnforceBytecodeVersion rule = newRule(parallelism);
+            rule.setFailFast(true);
+
+            EnforcerRuleException e =
+                    assertThrows(EnforcerRuleException.class, () -> rule.handleArtifacts(newArtifacts(20)));
+
+            assertEquals(
+                    "Found Banned Dependency: groupId:a0:type:classifier:1.0\n"
+                            + "Use 'mvn dependency:tree' to locate the source of the banned dependencies.",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    void keepsTheVersionInventoryByDefault() throws Exception {
+        File jar = newJar().withClass("a/A.class", 52).writeTo(new File(tempFolder, "a.jar"));
+        ArtifactScanIndex scanIndex = new ArtifactScanIndex();
+        EnforceBytecodeVersion rule = new EnforceBytecodeVersion(null, null, scanIndex);
+        rule.setLog(mock(EnforcerLogger.class));
+        rule.setMaxJavaMajorVersionNumber(52);
+
+        rule.handleArtifacts(Collections.singleton(
+                ArtifactBuilder.newBuilder().withFileOrDirectory(jar).build()));
+
+        ClassVersionInventory inventory = scanIndex.getJarContents(jar).getKnownVersionInventory();
+        assertTrue(inventory != null && inventory.isWithin(52, 0));
+    }
+
+    @Test
+    void doesNotKeepTheDecodedNames() throws Exception {
+        File jar = newJar().withClass("a/A.class", 52)
+                .withClass("a/B.class", 55)
+                .withClass("META-INF/versions/11/a/A.class", 55)
+                .writeTo(new File(tempFolder, "a.jar"));
+        ArtifactScanIndex scanIndex = new ArtifactScanIndex();
+        EnforceBytecodeVersion rule = new EnforceBytecodeVersion(null, null, scanIndex);
+        rule.setLog(mock(EnforcerLogger.class));
+        rule.setMaxJavaMajorVersionNumber(52);
+
+        assertThrows(
+                EnforcerRuleException.class,
+                () -> rule.handleArtifacts(Collections.singleton(
+                        ArtifactBuilder.newBuilder().withFileOrDirectory(jar).build())));
+
+        assertFalse(scanIndex.getJarContents(jar).hasDecodedNames());
+    }
+
+    @Test
+    void skipsVersionedEntriesOfJarsWhichAreNotMultiReleaseJars() throws Exception {
+        File jar = newJar().withClass("a/A.class", 52)
+                .withEntry("META-INF/versions/8/a/A.class", new byte[] {(byte) 0xCA, (byte) 0xFE})
+                .writeTo(new File(tempFolder, "versions.jar"));
+        ArtifactScanIndex scanIndex = new ArtifactScanIndex();
+        EnforceBytecodeVersion rule = new EnforceBytecodeVersion(null, null, scanIndex);
+        EnforcerLogger log = mock(EnforcerLogger.class);
+        rule.setLog(log);
+        rule.setMaxJavaMajorVersionNumber(52);
+
+        rule.handleArtifacts(Collections.singleton(
+                ArtifactBuilder.newBuilder().withFileOrDirectory(jar).build()));
+
+        verify(log, never()).warn(contains("META-INF/versions/8/a/A.class"));
+        List<ClassVersionInventory.Tree> trees =
+                scanIndex.getJarContents(jar).getKnownVersionInventory().getTrees();
+        assertEquals(2, trees.size());
+        assertFalse(trees.get(1).isRead());
+    }
+
+    @Test
+    void readsOnlyTheTreesOfMultiReleaseJarsWithinTheLimit() throws Exception {
+        File jar = newJar().withEntry("META-INF/MANIFEST.MF", "Multi-Release: true\n".getBytes())
+                .withClass("a/A.class", 52)
+                .withClass("META-INF/versions/8/a/A.class", 55)
+                .withEntry("META-INF/versions/11/a/A.class", new byte[] {(byte) 0xCA, (byte) 0xFE})
+                .writeTo(new File(tempFolder, "mr.jar"));
+        ArtifactScanIndex scanIndex = new ArtifactScanIndex();
+        EnforceBytecodeVersion rule = new EnforceBytecodeVersion(null, null, scanIndex);
+        EnforcerLogger log = mock(EnforcerLogger.class);
+        rule.setLog(log);
+        rule.setMaxJavaMajorVersionNumber(52);
+
+        rule.handleArtifacts(Collections.singleton(
+                ArtifactBuilder.newBuilder().withFileOrDirectory(jar).build()));
+
+        verify(log)
+                .warn("Invalid bytecodeVersion for groupId:artifactId:type:classifier:1.0:scope"
+                        + " : META-INF/versions/8/a/A.class: expected lower or equal to 52, but was 55");
+        List<ClassVersionInventory.Tree> trees =
+                scanIndex.getJarContents(jar).getKnownVersionInventory().getTrees();
+        assertEquals(3, trees.size());
+        assertTrue(trees.get(1).isRead());
+        assertFalse(trees.get(2).isRead());
+    }
+
+    @Test
+    void checksBaseEntriesBeforeVersionedEntries() throws Exception {
+        File jar = newJar().withEntry("META-INF/MANIFEST.MF", "Multi-Release: true\n".getBytes())
+                .withEntry("META-INF/versions/8/a/A.class", new byte[] {(byte) 0xCA, (byte) 0xFE})
+                .withClass("a/A.class", 55)
+                .writeTo(new File(tempFolder, "mr.jar"));
+        Set<Artifact> artifacts = Collections.singleton(
+                ArtifactBuilder.newBuilder().withFileOrDirectory(jar).build());
+
+        EnforcerRuleException e =
+                assertThrows(EnforcerRuleException.class, () -> newRule(1).handleArtifacts(artifacts));
+
+        assertEquals(
+                "Found Banned Dependency: groupId:artifactId:type:classifier:1.0\n"
+                        + "Use 'mvn dependency:tree' to locate the source of the banned dependencies.",
+                e.getMessage());
+    }
+
+    @Test
+    void readsHugeJarsInParallelRanges() throws Exception {
+        JarFileHelper helper = newJar();
+        for (int i = 0; i < 5000; i++) {
+            helper.withClass("p/C" + i + ".class", i == 4321 ? 55 : 52);
+        }
+        File jar = helper.writeTo(new File(tempFolder, "huge.jar"));
+        Set<Artifact> artifacts = Collections.singleton(
+                ArtifactBuilder.newBuilder().withFileOrDirectory(jar).build());
+
+        for (boolean strict : new boolean[] {false, true}) {
+            EnforceBytecodeVersion rule = newRule(1);
+            rule.setStrict(strict);
+            rule.setParallelEntryThreshold(1000);
+            EnforcerLogger log = mock(EnforcerLogger.class);
+            rule.setLog(log);
+
+            assertThrows(EnforcerRuleException.class, () -> rule.handleArtifacts(artifacts));
+
+            verify(log)
+                    .info("Restricted to JDK 8 yet groupId:artifactId:type:classifier:1.0:scope contains p/C4321.class"
+                            + " targeted to JDK 11");
+        }
+    }
+
+    private static EnforceBytecodeVersion newRule(int parallelism) {
+        EnforceBytecodeVersion rule = new EnforceBytecodeVersion(null, null, new ArtifactScanIndex());
+        rule.setLog(mock(EnforcerLogger.class));
+        rule.setMaxJavaMajorVersionNumber(52);
+        rule.setParallelism(parallelism);
+        return rule;
+    }
+
+    /**
+     * @return artifacts with a single class each, every third one targeting Java 11
+     */
+    private Set<Artifact> newArtifacts(int count) throws IOException {
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            File jar = newJar().withClass("p/C" + i + ".class", i % 3 == 0 ? 55 : 52)
+                    .writeTo(new File(tempFolder, "a" + i + ".jar"));
+            artifacts.add(ArtifactBuilder.newBuilder()
+                    .withArtifactId("a" + i)
+                    .withFileOrDirectory(jar)
+                    .build());
+        }
+        return artifacts;
+    }
 }
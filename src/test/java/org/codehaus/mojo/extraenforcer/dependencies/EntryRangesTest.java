@@ -0,0 +1,76 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntryRangesTest {
+
+    @Test
+    void processesEveryEntryOnce() {
+        AtomicIntegerArray processed = new AtomicIntegerArray(100_000);
+
+        EntryRanges.forEach(processed.length(), 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                processed.incrementAndGet(i);
+            }
+        });
+
+        for (int i = 0; i < processed.length(); i++) {
+            assertEquals(1, processed.get(i), "entry " + i);
+        }
+    }
+
+    @Test
+    void processesSmallArchivesInOneRange() {
+        for (int threshold : new int[] {0, 10_001}) {
+            List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+
+            EntryRanges.forEach(10_000, threshold, (from, to) -> ranges.add(from + "-" + to));
+
+            assertEquals(Collections.singletonList("0-10000"), ranges);
+        }
+    }
+
+    @Test
+    void rethrowsExceptionOfRange() {
+        IOException failure = new IOException("corrupt entry");
+
+        IOException e = assertThrows(
+                IOException.class,
+                () -> EntryRanges.forEach(100_000, 1, (from, to) -> {
+                    if (from <= 50_000 && 50_000 < to) {
+                        throw failure;
+                    }
+                }));
+
+        assertSame(failure, e);
+    }
+}
@@ -0,0 +1,146 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.classBytes;
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.newJar;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JarContentsStoreTest {
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void keyDependsOnTheJarFileAndItsClassEntries() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+        int[] crcs = {1, 2};
+        long[] sizes = {100, 200};
+        String key = JarContentsStore.keyOf(jar, crcs, sizes);
+
+        assertEquals(key, JarContentsStore.keyOf(jar, crcs.clone(), sizes.clone()));
+        assertNotEquals(key, JarContentsStore.keyOf(jar, new int[] {1, 3}, sizes));
+        assertNotEquals(key, JarContentsStore.keyOf(jar, crcs, new long[] {100, 201}));
+
+        // a checksum file next to the jar isn't trusted
+        Files.write(
+                new File(tempFolder, "test.jar.sha1").toPath(),
+                "0123456789abcdef0123456789abcdef01234567".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(key, JarContentsStore.keyOf(jar, crcs, sizes));
+
+        assertTrue(jar.setLastModified(jar.lastModified() - 10_000));
+        assertNotEquals(key, JarContentsStore.keyOf(jar, crcs, sizes));
+    }
+
+    @Test
+    void restoresContentsWithoutReadingTheEntries() throws Exception {
+        byte[] content = classBytes(55, 0, "B");
+        File jar = newJar().withClass("A.class", 52)
+                .withEntry("B.class", content)
+                .writeTo(new File(tempFolder, "test.jar"));
+        JarContentsStore store = new JarContentsStore(tempFolder.toPath().resolve("cache"));
+
+        JarContents original = new JarContents(jar);
+        original.load(store);
+        original.getMajorVersion(0);
+        original.getHash(1);
+        original.getVersionInventory();
+        original.isMultiRelease();
+        original.save(store);
+
+        // same central directory and modification time, but entries which can no longer be read
+        long lastModified = jar.lastModified();
+        try (RandomAccessFile file = new RandomAccessFile(jar, "rw")) {
+            file.write(new byte[] {1, 2, 3, 4});
+        }
+        assertTrue(jar.setLastModified(lastModified));
+
+        JarContents restored = new JarContents(jar);
+        restored.load(store);
+
+        assertEquals(Arrays.asList("A.class", "B.class"), restored.getClassEntryNames());
+        assertEquals(52, restored.getMajorVersion(0));
+        assertEquals(55, restored.getMajorVersion(1));
+        assertEquals(DigestUtils.sha256Hex(content), restored.getHash(1));
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        assertEquals(crc.getValue(), restored.getCrc(1));
+        assertEquals(content.length, restored.getSize(1));
+        assertEquals(1, restored.getVersionInventory().getTrees().size());
+        assertEquals(1, restored.getVersionInventory().getTrees().get(0).getMaxEntryIndex());
+        assertFalse(restored.isMultiRelease());
+    }
+
+    @Test
+    void readReportsMissingIndex() throws Exception {
+        JarContentsStore store = new JarContentsStore(tempFolder.toPath());
+
+        assertFalse(store.read("0123456789abcdef0123456789abcdef01234567", new JarContents(new File("x.jar"))));
+    }
+
+    @Test
+    void readRejectsCorruptIndex() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+        JarContentsStore store = new JarContentsStore(tempFolder.toPath());
+        writeIndex(new byte[] {0, 0, 0, 1, 0, 7});
+
+        assertThrows(
+                IOException.class, () -> store.read("0123456789abcdef0123456789abcdef01234567", new JarContents(jar)));
+    }
+
+    @Test
+    void readTreatsAnIndexOfAnotherEntryCountAsMissing() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+        JarContentsStore store = new JarContentsStore(tempFolder.toPath());
+
+        for (int count : new int[] {-1, 2, Integer.MAX_VALUE}) {
+            writeIndex(new byte[] {(byte) (count >>> 24), (byte) (count >>> 16), (byte) (count >>> 8), (byte) count});
+            JarContents contents = new JarContents(jar);
+
+            assertFalse(store.read("0123456789abcdef0123456789abcdef01234567", contents));
+            assertEquals(Arrays.asList("A.class"), contents.getClassEntryNames());
+        }
+    }
+
+    private void writeIndex(byte[] contents) throws IOException {
+        File index = new File(tempFolder, "01/0123456789abcdef0123456789abcdef01234567.idx");
+        index.getParentFile().mkdirs();
+        byte[] header = {0x45, 0x45, 0x43, 0x49, 0, 0, 0, 5};
+        byte[] bytes = Arrays.copyOf(header, header.length + contents.length);
+        System.arraycopy(contents, 0, bytes, header.length, contents.length);
+        Files.write(index.toPath(), bytes);
+    }
+}
@@ -0,0 +1,102 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Test utility to create jar files with arbitrary entries.
+ */
+public class JarFileHelper {
+    private final Map<String, byte[]> entries = new LinkedHashMap<>();
+
+    private boolean stored;
+
+    public static JarFileHelper newJar() {
+        return new JarFileHelper();
+    }
+
+    /**
+     * @param major the major class file version
+     * @param minor the minor class file version
+     * @param body additional bytes to make the class content unique
+     * @return the content of a class file, only the header is valid
+     */
+    public static byte[] classBytes(int major, int minor, String body) {
+        byte[] bodyBytes = body.getBytes();
+        byte[] result = new byte[8 + bodyBytes.length];
+        result[0] = (byte) 0xCA;
+        result[1] = (byte) 0xFE;
+        result[2] = (byte) 0xBA;
+        result[3] = (byte) 0xBE;
+        result[4] = (byte) (minor >> 8);
+        result[5] = (byte) minor;
+        result[6] = (byte) (major >> 8);
+        result[7] = (byte) major;
+        System.arraycopy(bodyBytes, 0, result, 8, bodyBytes.length);
+        return result;
+    }
+
+    public JarFileHelper withEntry(String name, byte[] content) {
+        entries.put(name, content);
+        return this;
+    }
+
+    public JarFileHelper withClass(String name, int major) {
+        return withEntry(name, classBytes(major, 0, name));
+    }
+
+    /**
+     * Store the entries instead of deflating them.
+     */
+    public JarFileHelper stored() {
+        stored = true;
+        return this;
+    }
+
+    public File writeTo(File file) throws IOException {
+        try (OutputStream os = Files.newOutputStream(file.toPath());
+                JarOutputStream jar = new JarOutputStream(os)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                if (stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(entry.getValue());
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(entry.getValue().length);
+                    zipEntry.setCompressedSize(entry.getValue().length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                jar.putNextEntry(zipEntry);
+                jar.write(entry.getValue());
+                jar.closeEntry();
+            }
+        }
+        return file;
+    }
+}
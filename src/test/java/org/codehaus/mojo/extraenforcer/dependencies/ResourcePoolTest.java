@@ -0,0 +1,57 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ResourcePoolTest {
+
+    @Test
+    void reusesReleasedObjects() {
+        ResourcePool<Object> pool = new ResourcePool<>(2, Object::new, resource -> {});
+
+        Object first = pool.acquire();
+        pool.release(first);
+
+        assertSame(first, pool.acquire());
+    }
+
+    @Test
+    void disposesObjectsWhichDoNotFit() {
+        AtomicInteger disposed = new AtomicInteger();
+        ResourcePool<Object> pool = new ResourcePool<>(2, Object::new, resource -> disposed.incrementAndGet());
+
+        List<Object> acquired = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            acquired.add(pool.acquire());
+        }
+        acquired.forEach(pool::release);
+
+        assertEquals(2, pool.idleCount());
+        assertEquals(3, disposed.get());
+    }
+}
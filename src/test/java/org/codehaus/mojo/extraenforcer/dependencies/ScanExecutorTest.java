@@ -0,0 +1,186 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScanExecutorTest {
+
+    private static final List<Integer> ITEMS = IntStream.range(0, 200).boxed().collect(Collectors.toList());
+
+    @Test
+    void singleThreadScansOnCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        try (ScanExecutor executor = ScanExecutor.create(1, false)) {
+            assertTrue(executor.isSequential());
+            AtomicInteger consumed = new AtomicInteger();
+            executor.forEachOrdered(ITEMS, item -> Thread.currentThread(), (item, thread) -> {
+                assertSame(caller, thread);
+                consumed.incrementAndGet();
+                return true;
+            });
+            assertEquals(ITEMS.size(), consumed.get());
+        }
+    }
+
+    @Test
+    void resultsAreConsumedInOrder() throws Exception {
+        List<Integer> consumed = new ArrayList<>();
+        try (ScanExecutor executor = ScanExecutor.create(8, false)) {
+            assertFalse(executor.isSequential());
+            executor.forEachOrdered(
+                    ITEMS,
+                    item -> {
+                        sleepRandomly();
+                        return item * 2;
+                    },
+                    (item, result) -> {
+                        assertEquals(item * 2, result);
+                        consumed.add(item);
+                        return true;
+                    });
+        }
+        assertEquals(ITEMS, consumed);
+    }
+
+    @Test
+    void failingConsumerCancelsRemainingTasks() {
+        AtomicInteger scanned = new AtomicInteger();
+        List<Integer> consumed = Collections.synchronizedList(new ArrayList<>());
+        try (ScanExecutor executor = ScanExecutor.create(4, false)) {
+            EnforcerRuleException e = assertThrows(
+                    EnforcerRuleException.class,
+                    () -> executor.forEachOrdered(
+                            ITEMS,
+                            item -> {
+                                scanned.incrementAndGet();
+                                return item;
+                            },
+                            (item, result) -> {
+                                if (item == 10) {
+                                    throw new EnforcerRuleException("conflict at " + item);
+                                }
+                                consumed.add(item);
+                                return true;
+                            }));
+            assertEquals("conflict at 10", e.getMessage());
+        }
+        assertEquals(ITEMS.subList(0, 10), consumed);
+        assertTrue(scanned.get() < ITEMS.size());
+    }
+
+    @Test
+    void failingTaskIsReportedInOrder() {
+        try (ScanExecutor executor = ScanExecutor.create(4, false)) {
+            EnforcerRuleException e = assertThrows(
+                    EnforcerRuleException.class,
+                    () -> executor.forEachOrdered(
+                            ITEMS,
+                            item -> {
+                                if (item >= 20) {
+                                    throw new EnforcerRuleException("failed " + item);
+                                }
+                                return item;
+                            },
+                            (item, result) -> true));
+            assertEquals("failed 20", e.getMessage());
+        }
+    }
+
+    @Test
+    void stoppingConsumerCancelsRemainingTasks() throws Exception {
+        for (int parallelism : new int[] {1, 4}) {
+            AtomicInteger scanned = new AtomicInteger();
+            List<Integer> consumed = new ArrayList<>();
+            try (ScanExecutor executor = ScanExecutor.create(parallelism, false)) {
+                executor.forEachOrdered(
+                        ITEMS,
+                        item -> {
+                            scanned.incrementAndGet();
+                            return item;
+                        },
+                        (item, result) -> {
+                            consumed.add(item);
+                            return item < 10;
+                        });
+            }
+            assertEquals(ITEMS.subList(0, 11), consumed);
+            assertTrue(scanned.get() < ITEMS.size());
+        }
+    }
+
+    @Test
+    void closeWaitsForInterruptedTasks() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger interrupted = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        try (ScanExecutor executor = ScanExecutor.create(4, false)) {
+            assertThrows(
+                    EnforcerRuleException.class,
+                    () -> executor.forEachOrdered(
+                            ITEMS,
+                            item -> {
+                                running.incrementAndGet();
+                                try {
+                                    if (item > 0) {
+                                        started.countDown();
+                                        Thread.sleep(10_000);
+                                    } else {
+                                        started.await();
+                                    }
+                                } catch (InterruptedException e) {
+                                    interrupted.incrementAndGet();
+                                } finally {
+                                    running.decrementAndGet();
+                                }
+                                return item;
+                            },
+                            (item, result) -> {
+                                throw new EnforcerRuleException("stop");
+                            }));
+        }
+        assertEquals(0, running.get());
+        assertTrue(interrupted.get() > 0);
+    }
+
+    private static void sleepRandomly() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ScopeFilteringDependencySelectorTest {
+
+    private final DependencySelector selector =
+            new ScopeFilteringDependencySelector(Collections.emptyList(), Collections.singletonList("runtime"), true);
+
+    @Test
+    void selectsDirectDependenciesByTheirScope() {
+        DependencySelector direct = selector.deriveChildSelector(context(null));
+
+        assertTrue(direct.selectDependency(dependency("compile", false)));
+        assertTrue(direct.selectDependency(dependency("test", false)));
+        assertFalse(direct.selectDependency(dependency("runtime", false)));
+        assertFalse(direct.selectDependency(dependency("compile", true)));
+    }
+
+    @Test
+    void selectsTransitiveDependenciesByTheirDerivedScope() {
+        DependencySelector direct = selector.deriveChildSelector(context(null));
+
+        DependencySelector ofCompile = direct.deriveChildSelector(context(dependency("compile", false)));
+        assertSame(direct, ofCompile);
+        assertTrue(ofCompile.selectDependency(dependency("compile", false)));
+        assertFalse(ofCompile.selectDependency(dependency("runtime", false)));
+
+        DependencySelector ofTest = direct.deriveChildSelector(context(dependency("test", false)));
+        assertTrue(ofTest.selectDependency(dependency("runtime", false)));
+
+        DependencySelector ofProvided = direct.deriveChildSelector(context(dependency("provided", false)));
+        assertTrue(ofProvided.selectDependency(dependency("runtime", false)));
+        assertSame(ofProvided, ofProvided.deriveChildSelector(context(dependency("runtime", false))));
+    }
+
+    @Test
+    void derivesScopesLikeTheResolver() {
+        assertEquals("runtime", ScopeFilteringDependencySelector.deriveScope(null, "runtime"));
+        assertEquals("runtime", ScopeFilteringDependencySelector.deriveScope("compile", "runtime"));
+        assertEquals("runtime", ScopeFilteringDependencySelector.deriveScope("runtime", "compile"));
+        assertEquals("test", ScopeFilteringDependencySelector.deriveScope("runtime", "test"));
+        assertEquals("test", ScopeFilteringDependencySelector.deriveScope("test", "compile"));
+        assertEquals("provided", ScopeFilteringDependencySelector.deriveScope("system", "compile"));
+    }
+
+    private static DependencyCollectionContext context(Dependency dependency) {
+        DependencyCollectionContext context = mock(DependencyCollectionContext.class);
+        when(context.getDependency()).thenReturn(dependency);
+        return context;
+    }
+
+    private static Dependency dependency(String scope, boolean optional) {
+        return new Dependency(new DefaultArtifact("groupId:artifactId:1.0"), scope, optional);
+    }
+}
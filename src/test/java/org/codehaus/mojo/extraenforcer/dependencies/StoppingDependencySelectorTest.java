@@ -0,0 +1,53 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class StoppingDependencySelectorTest {
+
+    private final DependencySelector selector = new StoppingDependencySelector(
+            dependency -> "project".equals(dependency.getArtifact().getArtifactId()));
+
+    @Test
+    void selectsDependenciesUntilTheLastOneIsSelected() {
+        DependencySelector child = selector.deriveChildSelector(mock(DependencyCollectionContext.class));
+        assertSame(selector, child);
+
+        assertTrue(selector.selectDependency(dependency("direct")));
+        assertTrue(child.selectDependency(dependency("project")));
+
+        assertFalse(selector.selectDependency(dependency("other")));
+        assertFalse(child.selectDependency(dependency("transitive")));
+    }
+
+    private static Dependency dependency(String artifactId) {
+        return new Dependency(new DefaultArtifact("groupId:" + artifactId + ":1.0"), "compile");
+    }
+}
@@ -0,0 +1,320 @@
+package org.codehaus.mojo.extraenforcer.dependencies;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.codehaus.mojo.extraenforcer.dependencies.JarFileHelper.newJar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZipCentralDirectoryTest {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    @TempDir
+    private File tempFolder;
+
+    @Test
+    void listsOnlyClassEntries() throws Exception {
+        File jar = newJar().withEntry("a/", new byte[0])
+                .withClass("a/A.class", 52)
+                .withEntry("a/A.class.txt", "text".getBytes())
+                .withEntry(".class", new byte[0])
+                .withEntry("b.class/", new byte[0])
+                .withClass("b/été.class", 55)
+                .writeTo(new File(tempFolder, "test.jar"));
+
+        ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+
+        assertEquals(2, directory.size());
+        assertEquals("a/A.class", directory.getName(0));
+        assertEquals("b/été.class", directory.getName(1));
+    }
+
+    @Test
+    void hashesAndComparesNamesWithoutDecodingThem() throws Exception {
+        File jar = newJar().withClass("a/A.class", 52)
+                .withClass("b/été.class", 55)
+                .writeTo(new File(tempFolder, "test.jar"));
+
+        ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+        assertEquals(ClassNameHashes.hash("a/A.class"), directory.getNameHash(0));
+        assertEquals(ClassNameHashes.hash("b/été.class"), directory.getNameHash(1));
+        CharSequence ascii = directory.getNameChars(0);
+        assertEquals("a/A.class", ascii.toString());
+        assertEquals('A', ascii.charAt(2));
+        assertEquals("A.class", ascii.subSequence(2, 9).toString());
+        assertEquals("b/été.class", directory.getNameChars(1).toString());
+        ByteBuffer name = ByteBuffer.wrap("xa/A.class".getBytes(StandardCharsets.UTF_8));
+        assertTrue(directory.nameEquals(0, name, 1, 9));
+        assertFalse(directory.nameEquals(1, name, 1, 9));
+        assertFalse(directory.nameEquals(0, name, 0, 9));
+    }
+
+    @Test
+    void matchesZipFileEntries() throws Exception {
+        File jar = newJar().withClass("A.class", 52).withClass("B.class", 55).writeTo(new File(tempFolder, "test.jar"));
+        assertMatchesZipFile(jar);
+
+        File stored = newJar().withClass("A.class", 52)
+                .withClass("B.class", 55)
+                .stored()
+                .writeTo(new File(tempFolder, "stored.jar"));
+        assertMatchesZipFile(stored);
+    }
+
+    @Test
+    void readsStartOfContent() throws Exception {
+        byte[] large = new byte[100_000];
+        new Random(42).nextBytes(large);
+        for (boolean stored : new boolean[] {false, true}) {
+            JarFileHelper helper = newJar().withEntry("Large.class", large)
+                    .withEntry("Empty.class", new byte[0])
+                    .withEntry("Short.class", new byte[] {(byte) 0xCA, (byte) 0xFE});
+            if (stored) {
+                helper.stored();
+            }
+            File jar = helper.writeTo(new File(tempFolder, "test-" + stored + ".jar"));
+
+            ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+            byte[] header = new byte[8];
+
+            assertEquals(8, directory.readContent(0, header));
+            assertArrayEquals(Arrays.copyOf(large, 8), header);
+            assertEquals(0, directory.readContent(1, header));
+            assertEquals(2, directory.readContent(2, header));
+            assertEquals((byte) 0xFE, header[1]);
+        }
+    }
+
+    @Test
+    void readsWholeContent() throws Exception {
+        byte[] large = new byte[100_000];
+        new Random(42).nextBytes(large);
+        for (boolean stored : new boolean[] {false, true}) {
+            JarFileHelper helper = newJar().withEntry("Large.class", large)
+                    .withEntry("Empty.class", new byte[0])
+                    .withEntry("Short.class", new byte[] {(byte) 0xCA, (byte) 0xFE});
+            if (stored) {
+                helper.stored();
+            }
+            File jar = helper.writeTo(new File(tempFolder, "whole-" + stored + ".jar"));
+
+            ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+
+            assertArrayEquals(large, directory.readContent(0, ZipCentralDirectoryTest::toArray));
+            assertArrayEquals(new byte[0], directory.readContent(1, ZipCentralDirectoryTest::toArray));
+            assertArrayEquals(
+                    new byte[] {(byte) 0xCA, (byte) 0xFE}, directory.readContent(2, ZipCentralDirectoryTest::toArray));
+        }
+    }
+
+    @Test
+    void readsContentConcurrently() throws Exception {
+        Random random = new Random(42);
+        byte[][] contents = new byte[200][];
+        for (boolean stored : new boolean[] {false, true}) {
+            JarFileHelper helper = newJar();
+            for (int i = 0; i < contents.length; i++) {
+                contents[i] = new byte[100 + random.nextInt(5000)];
+                random.nextBytes(contents[i]);
+                helper.withEntry("C" + i + ".class", contents[i]);
+            }
+            if (stored) {
+                helper.stored();
+            }
+            File jar = helper.writeTo(new File(tempFolder, "concurrent-" + stored + ".jar"));
+
+            ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+            IntStream.range(0, contents.length).parallel().forEach(i -> {
+                try {
+                    assertArrayEquals(contents[i], directory.readContent(i, ZipCentralDirectoryTest::toArray));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    void supportsPrependedData() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+        byte[] content = Files.readAllBytes(jar.toPath());
+        File launcher = new File(tempFolder, "launcher.jar");
+        try (OutputStream os = Files.newOutputStream(launcher.toPath())) {
+            os.write("#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes());
+            os.write(content);
+        }
+
+        assertMatchesZipFile(launcher);
+        byte[] header = new byte[8];
+        assertEquals(8, ZipCentralDirectory.readClassEntries(launcher).readContent(0, header));
+        assertEquals((byte) 0xCA, header[0]);
+    }
+
+    @Test
+    void readsFilesLargerThan2Gb() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+        byte[] content = Files.readAllBytes(jar.toPath());
+        File large = new File(tempFolder, "large.jar");
+        long prepended = 3L * 1024 * 1024 * 1024;
+        try (RandomAccessFile file = new RandomAccessFile(large, "rw")) {
+            // sparse on most file systems, only the zip file itself is written
+            file.setLength(prepended);
+            file.seek(prepended);
+            file.write(content);
+        }
+
+        ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(large);
+        assertEquals(1, directory.size());
+        assertEquals(prepended, directory.getLocalHeaderOffset(0));
+        byte[] header = new byte[8];
+        assertEquals(8, directory.readContent(0, header));
+        assertEquals((byte) 0xCA, header[0]);
+    }
+
+    @Test
+    void closesTheFileUnlessReadFrom() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+
+        ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+        assertTrue(directory.isFileOpen());
+        directory.close();
+        assertFalse(directory.isFileOpen());
+
+        try (Closeable lease = directory.keepOpen()) {
+            assertTrue(directory.isFileOpen());
+            directory.close();
+            // still read from
+            assertTrue(directory.isFileOpen());
+            assertEquals(8, directory.readContent(0, new byte[8]));
+        }
+        directory.close();
+        assertFalse(directory.isFileOpen());
+        assertEquals("A.class", directory.getName(0));
+        assertEquals(8, directory.readContent(0, new byte[8]));
+        directory.close();
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentlyReadFilesOpen() throws Exception {
+        File jar = newJar().withClass("A.class", 52).writeTo(new File(tempFolder, "test.jar"));
+        List<ZipCentralDirectory> directories = new ArrayList<>();
+        for (int i = 0; i <= ZipCentralDirectory.MAX_IDLE_FILES; i++) {
+            ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+            assertEquals(8, directory.readContent(0, new byte[8]));
+            directories.add(directory);
+        }
+
+        assertFalse(directories.get(0).isFileOpen());
+        for (ZipCentralDirectory directory : directories.subList(1, directories.size())) {
+            assertTrue(directory.isFileOpen());
+            directory.close();
+        }
+    }
+
+    @Test
+    void supportsZip64() throws Exception {
+        File jar = new File(tempFolder, "zip64.jar");
+        int count = 0x10000 + 10;
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            for (int i = 0; i < count; i++) {
+                zip.putNextEntry(new ZipEntry(i % 2 == 0 ? "C" + i + ".class" : "R" + i + ".txt"));
+                zip.write(i);
+                zip.closeEntry();
+            }
+        }
+
+        ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+
+        assertEquals(count / 2, directory.size());
+        assertEquals("C" + (count - 2) + ".class", directory.getName(directory.size() - 1));
+    }
+
+    @Test
+    void rejectsInvalidFiles() throws Exception {
+        File empty = new File(tempFolder, "empty.jar");
+        Files.createFile(empty.toPath());
+        assertThrows(IOException.class, () -> ZipCentralDirectory.readClassEntries(empty));
+
+        File text = new File(tempFolder, "text.jar");
+        Files.write(text.toPath(), Collections.nCopies(100, "not a zip file"), StandardOpenOption.CREATE);
+        assertThrows(IOException.class, () -> ZipCentralDirectory.readClassEntries(text));
+    }
+
+    private static void assertMatchesZipFile(File jar) throws IOException {
+        ZipCentralDirectory directory = ZipCentralDirectory.readClassEntries(jar);
+        byte[] content = Files.readAllBytes(jar.toPath());
+        List<ZipEntry> entries = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            Collections.list(zipFile.entries()).stream()
+                    .filter(e -> e.getName().endsWith(".class"))
+                    .forEach(entries::add);
+        }
+
+        assertEquals(entries.size(), directory.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ZipEntry entry = entries.get(i);
+            assertEquals(entry.getName(), directory.getName(i));
+            assertEquals(entry.getMethod(), directory.getMethod(i));
+            assertEquals(entry.getCrc(), directory.getCrc(i));
+            assertEquals(entry.getCompressedSize(), directory.getCompressedSize(i));
+            assertEquals(entry.getSize(), directory.getSize(i));
+            assertEquals(LOCAL_HEADER_SIGNATURE, readInt(content, (int) directory.getLocalHeaderOffset(i)));
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer content) {
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+
+    private static int readInt(byte[] content, int offset) {
+        return (content[offset] & 0xFF)
+                | (content[offset + 1] & 0xFF) << 8
+                | (content[offset + 2] & 0xFF) << 16
+                | (content[offset + 3] & 0xFF) << 24;
+    }
+}